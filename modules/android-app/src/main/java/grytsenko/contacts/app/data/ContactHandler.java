@@ -0,0 +1,18 @@
+package grytsenko.contacts.app.data;
+
+import grytsenko.contacts.common.model.Contact;
+
+/**
+ * Handles contacts, that are read from response one by one.
+ */
+public interface ContactHandler {
+
+    /**
+     * Handles the next loaded contact.
+     * 
+     * @param contact
+     *            the loaded contact.
+     */
+    void handle(Contact contact);
+
+}
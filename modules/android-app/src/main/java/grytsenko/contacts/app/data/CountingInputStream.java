@@ -0,0 +1,56 @@
+package grytsenko.contacts.app.data;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stream, that counts bytes, that are read from it.
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private final AtomicLong counter;
+
+    /**
+     * Creates stream, that adds number of read bytes to the given counter.
+     */
+    public CountingInputStream(InputStream in, AtomicLong counter) {
+        super(in);
+
+        this.counter = counter;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int value = super.read();
+        if (value >= 0) {
+            counter.incrementAndGet();
+        }
+        return value;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException {
+        int count = super.read(buffer, offset, length);
+        if (count > 0) {
+            counter.addAndGet(count);
+        }
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long count = super.skip(n);
+        if (count > 0) {
+            counter.addAndGet(count);
+        }
+        return count;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+}
@@ -0,0 +1,21 @@
+package grytsenko.contacts.app.data;
+
+import grytsenko.contacts.common.model.Group;
+
+/**
+ * Handles groups and contacts, that are read from response one by one.
+ * 
+ * <p>
+ * All groups are handled before contacts.
+ */
+public interface GroupsHandler extends ContactHandler {
+
+    /**
+     * Handles the next loaded group.
+     * 
+     * @param group
+     *            the loaded group with usernames of its members.
+     */
+    void handleGroup(Group group);
+
+}
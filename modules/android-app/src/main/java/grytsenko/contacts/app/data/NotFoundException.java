@@ -0,0 +1,19 @@
+package grytsenko.contacts.app.data;
+
+/**
+ * Thrown if network resource does not exist, for example, if service does
+ * not support requested operation yet.
+ */
+public class NotFoundException extends NotAvailableException {
+
+    private static final long serialVersionUID = 2268473016559832417L;
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+
+    public NotFoundException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,22 @@
+package grytsenko.contacts.app.data;
+
+import java.util.List;
+
+/**
+ * Handles differences between synchronized contacts and groups of user, that
+ * are read from response one by one.
+ * 
+ * <p>
+ * Differing buckets are handled before groups and contacts.
+ */
+public interface ReconciliationHandler extends GroupsHandler {
+
+    /**
+     * Handles buckets, whose digests differ.
+     * 
+     * @param buckets
+     *            the indexes of buckets.
+     */
+    void handleBuckets(List<Integer> buckets);
+
+}
@@ -1,30 +1,79 @@
 package grytsenko.contacts.app.data;
 
 import static java.text.MessageFormat.format;
-import static java.util.Collections.singletonList;
 import grytsenko.contacts.app.R;
+import grytsenko.contacts.common.model.Changes;
 import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.ContactsSummary;
+import grytsenko.contacts.common.model.Group;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.params.ConnManagerParams;
+import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.params.HttpProtocolParams;
+import org.apache.http.protocol.HttpContext;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.type.TypeReference;
+import org.springframework.http.ContentCodingType;
 import org.springframework.http.HttpBasicAuthentication;
-import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.json.MappingJacksonHttpMessageConverter;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.util.Log;
 
 /**
  * Client to access REST services for contacts.
+ * 
+ * <p>
+ * Client holds single HTTP stack, so connections to service and caches of
+ * JSON mappers are reused between requests.
+ * 
+ * <p>
+ * Client prefers binary JSON (Smile), but accepts plain JSON too.
  */
 public final class RestClient {
 
@@ -32,11 +81,26 @@ public final class RestClient {
 
     private Context context;
 
+    private AtomicLong receivedBytes;
+    private AtomicLong decodedBytes;
+
+    private ObjectMapper jsonMapper;
+    private ObjectMapper smileMapper;
+    private RestTemplate restTemplate;
+
     /**
      * Creates a client in the given context.
      */
     public RestClient(Context context) {
         this.context = context;
+
+        receivedBytes = new AtomicLong();
+        decodedBytes = new AtomicLong();
+
+        jsonMapper = new ObjectMapper();
+        smileMapper = new ObjectMapper(new SmileFactory());
+        restTemplate = createTemplate(context.getResources(), receivedBytes,
+                decodedBytes, jsonMapper, smileMapper);
     }
 
     /**
@@ -66,60 +130,171 @@ public final class RestClient {
     }
 
     /**
-     * Gets contacts of all people from the one office with user.
+     * Gets all groups of user and contacts from these groups.
+     * 
+     * <p>
+     * Groups and contacts are parsed from response one by one and passed to
+     * handler, so the whole list of contacts is never kept in memory.
+     * 
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
+     * @param handler
+     *            the handler for groups and contacts, including contact for
+     *            user.
+     * 
+     * @return the number of loaded contacts.
+     * 
+     * @throws NotAvailableException
+     *             if service is not available.
+     * @throws NotAuthorizedException
+     *             if user is not authorized.
+     */
+    public int getGroups(String username, String password,
+            GroupsHandler handler) throws NotAvailableException,
+            NotAuthorizedException {
+        Log.d(TAG, format("Find groups of {0}.", username));
+
+        URI url = buildUrl(context.getString(R.string.restPathGroups));
+        return doGet(url, username, password, new GroupsExtractor(handler));
+    }
+
+    /**
+     * Gets differences between synchronized contacts and groups of user.
+     * 
+     * <p>
+     * Client sends digests of buckets of synchronized contacts, service
+     * returns groups and contacts only from buckets, whose digests differ. So
+     * the size of response depends on the number of changes, not on the
+     * number of contacts.
      * 
      * @param username
      *            the name of user.
      * @param password
      *            the password of user.
+     * @param summary
+     *            the digests of buckets of synchronized contacts.
+     * @param handler
+     *            the handler for differing buckets, groups with members from
+     *            these buckets and contacts from these buckets.
      * 
-     * @return the contacts of coworkers, including contact for user.
+     * @return the number of loaded contacts.
      * 
+     * @throws NotFoundException
+     *             if service does not support reconciliation.
      * @throws NotAvailableException
      *             if service is not available.
      * @throws NotAuthorizedException
      *             if user is not authorized.
      */
-    public Contact[] getCoworkers(String username, String password)
+    public int reconcile(String username, String password,
+            ContactsSummary summary, ReconciliationHandler handler)
             throws NotAvailableException, NotAuthorizedException {
-        Log.d(TAG, format("Find coworkers of {0}.", username));
+        Log.d(TAG, format("Reconcile {0} buckets for {1}.",
+                summary.getDigests().length, username));
 
-        URI url = buildUrl(context.getString(R.string.restPathCoworkers));
-        return doGet(url, username, password, Contact[].class);
+        URI url = buildUrl(context.getString(R.string.restPathReconcile));
+        RequestCallback callback = new JsonBodyCallback(username, password,
+                jsonMapper, summary);
+        return execute(url, HttpMethod.POST, callback,
+                new ReconciliationExtractor(handler));
+    }
+
+    /**
+     * Gets changes of groups of user and their contacts.
+     * 
+     * <p>
+     * Request is cheap, so it can be used to check that contacts should be
+     * loaded again.
+     * 
+     * @param username
+     *            the name of user.
+     * @param password
+     *            the password of user.
+     * @param watermark
+     *            the watermark of the last synchronization or
+     *            <code>null</code> if contacts were not synchronized.
+     * 
+     * @return the changes of contacts.
+     * 
+     * @throws NotAvailableException
+     *             if service is not available.
+     * @throws NotAuthorizedException
+     *             if user is not authorized.
+     */
+    public Changes getChanges(String username, String password,
+            String watermark) throws NotAvailableException,
+            NotAuthorizedException {
+        Log.d(TAG, format("Get changes for {0}.", username));
+
+        String query = watermark != null ? "watermark=" + watermark : null;
+        URI url = buildUrl(context.getString(R.string.restPathChanges), query);
+        return doGet(url, username, password, Changes.class);
+    }
+
+    /**
+     * Returns the number of bytes, that were received by this client.
+     * 
+     * <p>
+     * Bytes are counted as they are transferred, i.e. before decompression.
+     */
+    public long getReceivedBytes() {
+        return receivedBytes.get();
+    }
+
+    /**
+     * Returns the number of bytes, that were received by this client, after
+     * decompression.
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
     }
 
     private URI buildUrl(String path) throws NotAvailableException {
+        return buildUrl(path, null);
+    }
+
+    private URI buildUrl(String path, String query)
+            throws NotAvailableException {
         String scheme = context.getString(R.string.restScheme);
         String authority = context.getString(R.string.restAuthority);
         try {
-            return new URI(scheme, authority, path, null, null);
+            return new URI(scheme, authority, path, query, null);
         } catch (URISyntaxException exception) {
             throw new NotAvailableException("Invalid URL.", exception);
         }
     }
 
-    private static <T> T doGet(URI url, String username, String password,
+    private <T> T doGet(URI url, String username, String password,
             Class<T> responseClass) throws NotAvailableException,
             NotAuthorizedException {
-        Log.d(TAG, format("Send GET request to {0}.", url.toString()));
+        return doGet(url, username, password,
+                new HttpMessageConverterExtractor<T>(responseClass,
+                        restTemplate.getMessageConverters()));
+    }
 
-        RestTemplate template = new RestTemplate();
-        template.getMessageConverters().add(
-                new MappingJacksonHttpMessageConverter());
+    private <T> T doGet(URI url, String username, String password,
+            ResponseExtractor<T> extractor) throws NotAvailableException,
+            NotAuthorizedException {
+        return execute(url, HttpMethod.GET, new HeadersCallback(username,
+                password), extractor);
+    }
 
-        HttpHeaders headers = new HttpHeaders();
-        headers.setAccept(singletonList(MediaType.APPLICATION_JSON));
-        headers.setAuthorization(new HttpBasicAuthentication(username, password));
-        HttpEntity<?> request = new HttpEntity<Object>(headers);
+    private <T> T execute(URI url, HttpMethod method,
+            RequestCallback callback, ResponseExtractor<T> extractor)
+            throws NotAvailableException, NotAuthorizedException {
+        Log.d(TAG, format("Send {0} request to {1}.", method, url.toString()));
 
         try {
-            ResponseEntity<T> response = template.exchange(url, HttpMethod.GET,
-                    request, responseClass);
-            return response.getBody();
+            return restTemplate.execute(url, method, callback, extractor);
         } catch (HttpClientErrorException exception) {
             if (exception.getStatusCode() == HttpStatus.UNAUTHORIZED) {
                 throw new NotAuthorizedException("Invalid credentials.");
             }
+            if (exception.getStatusCode() == HttpStatus.NOT_FOUND) {
+                throw new NotFoundException("Resource not found.", exception);
+            }
 
             throw new NotAvailableException("Client Error.", exception);
         } catch (RestClientException exception) {
@@ -128,4 +303,352 @@ public final class RestClient {
         }
     }
 
+    /**
+     * Creates template, that uses pool of persistent connections.
+     * 
+     * <p>
+     * Compressed responses are decoded by template transparently.
+     */
+    private static RestTemplate createTemplate(Resources resources,
+            AtomicLong receivedBytes, AtomicLong decodedBytes,
+            ObjectMapper jsonMapper, ObjectMapper smileMapper) {
+        return createTemplate(
+                resources.getInteger(R.integer.restConnectTimeout),
+                resources.getInteger(R.integer.restReadTimeout),
+                resources.getInteger(R.integer.restKeepAlive),
+                resources.getInteger(R.integer.restMaxConnections),
+                receivedBytes, decodedBytes, jsonMapper, smileMapper);
+    }
+
+    /**
+     * Creates template with the given settings of connections.
+     * 
+     * <p>
+     * Does not depend on resources, so it can be used outside of device.
+     */
+    static RestTemplate createTemplate(int connectTimeout, int readTimeout,
+            int keepAlive, int maxConnections, AtomicLong receivedBytes,
+            AtomicLong decodedBytes, ObjectMapper jsonMapper,
+            ObjectMapper smileMapper) {
+        HttpParams params = new BasicHttpParams();
+        HttpProtocolParams.setVersion(params, HttpVersion.HTTP_1_1);
+        HttpConnectionParams.setConnectionTimeout(params, connectTimeout);
+        HttpConnectionParams.setSoTimeout(params, readTimeout);
+        HttpConnectionParams.setStaleCheckingEnabled(params, true);
+        ConnManagerParams.setMaxTotalConnections(params, maxConnections);
+        ConnManagerParams.setMaxConnectionsPerRoute(params,
+                new ConnPerRouteBean(maxConnections));
+
+        SchemeRegistry schemes = new SchemeRegistry();
+        schemes.register(new Scheme("http", PlainSocketFactory
+                .getSocketFactory(), 80));
+        schemes.register(new Scheme("https", SSLSocketFactory
+                .getSocketFactory(), 443));
+
+        ClientConnectionManager connectionManager = new ThreadSafeClientConnManager(
+                params, schemes);
+        DefaultHttpClient httpClient = new DefaultHttpClient(
+                connectionManager, params);
+        httpClient.setKeepAliveStrategy(new KeepAliveStrategy(keepAlive));
+        httpClient.addResponseInterceptor(new ReceivedBytesCounter(
+                receivedBytes));
+
+        MappingJacksonHttpMessageConverter jsonConverter = new MappingJacksonHttpMessageConverter();
+        jsonConverter.setObjectMapper(jsonMapper);
+
+        RestTemplate template = new RestTemplate(
+                new HttpComponentsClientHttpRequestFactory(httpClient));
+        template.setInterceptors(Arrays
+                .<ClientHttpRequestInterceptor> asList(new DecodedBytesCounter(
+                        decodedBytes)));
+        template.getMessageConverters().add(
+                new SmileHttpMessageConverter(smileMapper));
+        template.getMessageConverters().add(jsonConverter);
+        return template;
+    }
+
+    /**
+     * Counts bytes in bodies of responses.
+     */
+    private static class ReceivedBytesCounter implements
+            HttpResponseInterceptor {
+
+        private final AtomicLong receivedBytes;
+
+        public ReceivedBytesCounter(AtomicLong receivedBytes) {
+            this.receivedBytes = receivedBytes;
+        }
+
+        @Override
+        public void process(HttpResponse response, HttpContext context) {
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                response.setEntity(new CountingEntity(entity));
+            }
+        }
+
+        private class CountingEntity extends HttpEntityWrapper {
+
+            public CountingEntity(HttpEntity entity) {
+                super(entity);
+            }
+
+            @Override
+            public InputStream getContent() throws IOException {
+                return new CountingInputStream(wrappedEntity.getContent(),
+                        receivedBytes);
+            }
+
+        }
+
+    }
+
+    /**
+     * Counts bytes in bodies of responses after decompression.
+     */
+    private static class DecodedBytesCounter implements
+            ClientHttpRequestInterceptor {
+
+        private final AtomicLong decodedBytes;
+
+        public DecodedBytesCounter(AtomicLong decodedBytes) {
+            this.decodedBytes = decodedBytes;
+        }
+
+        @Override
+        public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                ClientHttpRequestExecution execution) throws IOException {
+            return new CountingResponse(execution.execute(request, body));
+        }
+
+        private class CountingResponse implements ClientHttpResponse {
+
+            private final ClientHttpResponse response;
+            private InputStream body;
+
+            public CountingResponse(ClientHttpResponse response) {
+                this.response = response;
+            }
+
+            @Override
+            public HttpHeaders getHeaders() {
+                return response.getHeaders();
+            }
+
+            @Override
+            public InputStream getBody() throws IOException {
+                if (body == null) {
+                    body = new CountingInputStream(response.getBody(),
+                            decodedBytes);
+                }
+                return body;
+            }
+
+            @Override
+            public HttpStatus getStatusCode() throws IOException {
+                return response.getStatusCode();
+            }
+
+            @Override
+            public int getRawStatusCode() throws IOException {
+                return response.getRawStatusCode();
+            }
+
+            @Override
+            public String getStatusText() throws IOException {
+                return response.getStatusText();
+            }
+
+            @Override
+            public void close() {
+                response.close();
+            }
+
+        }
+
+    }
+
+    /**
+     * Sets headers, that are common for all requests.
+     */
+    private static class HeadersCallback implements RequestCallback {
+
+        private final String username;
+        private final String password;
+
+        public HeadersCallback(String username, String password) {
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public void doWithRequest(ClientHttpRequest request) throws IOException {
+            HttpHeaders headers = request.getHeaders();
+            headers.setAccept(Arrays.asList(
+                    SmileHttpMessageConverter.APPLICATION_SMILE,
+                    MediaType.APPLICATION_JSON));
+            headers.setAcceptEncoding(ContentCodingType.GZIP);
+            headers.setAuthorization(new HttpBasicAuthentication(username,
+                    password));
+        }
+
+    }
+
+    /**
+     * Sets common headers and writes object to body of request as JSON.
+     */
+    private static class JsonBodyCallback extends HeadersCallback {
+
+        private final ObjectMapper mapper;
+        private final Object body;
+
+        public JsonBodyCallback(String username, String password,
+                ObjectMapper mapper, Object body) {
+            super(username, password);
+
+            this.mapper = mapper;
+            this.body = body;
+        }
+
+        @Override
+        public void doWithRequest(ClientHttpRequest request) throws IOException {
+            super.doWithRequest(request);
+
+            request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+            mapper.writeValue(request.getBody(), body);
+        }
+
+    }
+
+    /**
+     * Reads groups and contacts token by token and passes them to handler.
+     * 
+     * <p>
+     * Fields <code>groups</code> and <code>contacts</code> are expected in
+     * this order, other fields are skipped.
+     */
+    private class GroupsExtractor implements ResponseExtractor<Integer> {
+
+        private final GroupsHandler handler;
+
+        public GroupsExtractor(GroupsHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public Integer extractData(ClientHttpResponse response)
+                throws IOException {
+            ObjectMapper mapper = isSmile(response) ? smileMapper
+                    : jsonMapper;
+            JsonParser parser = mapper.getJsonFactory().createJsonParser(
+                    response.getBody());
+
+            try {
+                expect(parser, JsonToken.START_OBJECT);
+
+                int contactsNum = 0;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    if ("groups".equals(field)) {
+                        expect(parser, JsonToken.START_ARRAY);
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            handler.handleGroup(mapper.readValue(parser,
+                                    Group.class));
+                        }
+                    } else if ("contacts".equals(field)) {
+                        expect(parser, JsonToken.START_ARRAY);
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            handler.handle(mapper.readValue(parser,
+                                    Contact.class));
+                            ++contactsNum;
+                        }
+                    } else {
+                        parser.nextToken();
+                        handleField(field, parser, mapper);
+                    }
+                }
+
+                return contactsNum;
+            } finally {
+                parser.close();
+            }
+        }
+
+        /**
+         * Handles other field, parser is positioned at its value.
+         */
+        protected void handleField(String field, JsonParser parser,
+                ObjectMapper mapper) throws IOException {
+            parser.skipChildren();
+        }
+
+        private void expect(JsonParser parser, JsonToken token)
+                throws IOException {
+            if (parser.nextToken() != token) {
+                throw new JsonParseException(format("{0} expected.", token),
+                        parser.getCurrentLocation());
+            }
+        }
+
+        private boolean isSmile(ClientHttpResponse response) {
+            MediaType contentType = response.getHeaders().getContentType();
+            return contentType != null
+                    && SmileHttpMessageConverter.APPLICATION_SMILE
+                            .includes(contentType);
+        }
+
+    }
+
+    /**
+     * Reads differing buckets and passes them to handler, before groups and
+     * contacts.
+     */
+    private class ReconciliationExtractor extends GroupsExtractor {
+
+        private final ReconciliationHandler handler;
+
+        public ReconciliationExtractor(ReconciliationHandler handler) {
+            super(handler);
+
+            this.handler = handler;
+        }
+
+        @Override
+        protected void handleField(String field, JsonParser parser,
+                ObjectMapper mapper) throws IOException {
+            if (!"buckets".equals(field)) {
+                super.handleField(field, parser, mapper);
+                return;
+            }
+
+            List<Integer> buckets = mapper.readValue(parser,
+                    new TypeReference<List<Integer>>() {
+                    });
+            handler.handleBuckets(buckets);
+        }
+
+    }
+
+    /**
+     * Keeps connection alive during the given time, if service does not
+     * specify it explicitly.
+     */
+    private static class KeepAliveStrategy extends
+            DefaultConnectionKeepAliveStrategy {
+
+        private final long keepAlive;
+
+        public KeepAliveStrategy(long keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        @Override
+        public long getKeepAliveDuration(HttpResponse response,
+                HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            return duration < 0 ? keepAlive : duration;
+        }
+
+    }
+
 }
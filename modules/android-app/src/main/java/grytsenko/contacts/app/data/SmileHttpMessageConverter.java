@@ -0,0 +1,33 @@
+package grytsenko.contacts.app.data;
+
+import static java.util.Collections.singletonList;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonHttpMessageConverter;
+
+/**
+ * Converts objects to binary JSON (Smile) and vice versa.
+ */
+public class SmileHttpMessageConverter extends
+        MappingJacksonHttpMessageConverter {
+
+    /**
+     * Media type for Smile.
+     */
+    public static final MediaType APPLICATION_SMILE = new MediaType(
+            "application", "x-jackson-smile");
+
+    /**
+     * Creates converter, that uses the given mapper.
+     * 
+     * @param objectMapper
+     *            the mapper, that is based on {@link SmileFactory}.
+     */
+    public SmileHttpMessageConverter(ObjectMapper objectMapper) {
+        setObjectMapper(objectMapper);
+        setSupportedMediaTypes(singletonList(APPLICATION_SMILE));
+    }
+
+}
@@ -0,0 +1,202 @@
+package grytsenko.contacts.app.service.sync;
+
+import static java.text.MessageFormat.format;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Helps manage checkpoint of synchronization.
+ * 
+ * <p>
+ * Checkpoint is saved once, after contacts were compared. Then usernames of
+ * synchronized contacts are appended to separate file, so saving of progress
+ * is cheap.
+ */
+public class CheckpointManager {
+
+    private static final String TAG = CheckpointManager.class.getName();
+
+    private static final String CHECKPOINT_FILE = "sync_checkpoint.json";
+    private static final String APPLIED_FILE = "sync_checkpoint_applied.txt";
+
+    private static final String PREFERENCES_NAME = "sync_watermarks";
+
+    private static final String CHARSET = "UTF-8";
+
+    /**
+     * Checkpoint is ignored, if contacts were loaded earlier.
+     */
+    private static final long MAX_AGE = 60L * 60L * 1000L;
+
+    private Context context;
+    private ObjectMapper mapper;
+    private SharedPreferences preferences;
+
+    /**
+     * Creates manager in the specified context.
+     * 
+     * @param context
+     *            the context, where manager is used.
+     */
+    public CheckpointManager(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context not defined.");
+        }
+
+        this.context = context;
+        mapper = new ObjectMapper();
+        preferences = context.getSharedPreferences(PREFERENCES_NAME,
+                Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Loads checkpoint of the previous synchronization.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * 
+     * @return the found checkpoint or <code>null</code> if there is no
+     *         suitable checkpoint.
+     */
+    public SyncCheckpoint load(Account account) {
+        SyncCheckpoint checkpoint;
+        try {
+            checkpoint = mapper.readValue(
+                    context.openFileInput(CHECKPOINT_FILE),
+                    SyncCheckpoint.class);
+        } catch (FileNotFoundException exception) {
+            return null;
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not read checkpoint.", exception);
+            clear();
+            return null;
+        }
+
+        if (!account.name.equals(checkpoint.getAccountName())) {
+            Log.d(TAG, "Checkpoint belongs to another account.");
+            clear();
+            return null;
+        }
+
+        long age = System.currentTimeMillis() - checkpoint.getLoadedAt();
+        if (age < 0 || age > MAX_AGE) {
+            Log.d(TAG, "Checkpoint is outdated.");
+            clear();
+            return null;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    context.openFileInput(APPLIED_FILE), CHARSET));
+            try {
+                String username;
+                while ((username = reader.readLine()) != null) {
+                    checkpoint.markApplied(username);
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (FileNotFoundException exception) {
+            Log.d(TAG, "No contacts were synchronized after checkpoint.");
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not read synchronized contacts.", exception);
+        }
+
+        return checkpoint;
+    }
+
+    /**
+     * Saves new checkpoint.
+     * 
+     * @param checkpoint
+     *            the saved checkpoint.
+     */
+    public void save(SyncCheckpoint checkpoint) {
+        context.deleteFile(APPLIED_FILE);
+
+        try {
+            OutputStream stream = context.openFileOutput(CHECKPOINT_FILE,
+                    Context.MODE_PRIVATE);
+            try {
+                mapper.writeValue(stream, checkpoint);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not save checkpoint.", exception);
+            clear();
+        }
+    }
+
+    /**
+     * Saves progress of synchronization.
+     * 
+     * @param checkpoint
+     *            the current checkpoint.
+     * @param username
+     *            the name of user, whose contact was synchronized.
+     */
+    public void markApplied(SyncCheckpoint checkpoint, String username) {
+        checkpoint.markApplied(username);
+
+        try {
+            FileOutputStream stream = context.openFileOutput(APPLIED_FILE,
+                    Context.MODE_APPEND);
+            try {
+                stream.write((username + '\n').getBytes(CHARSET));
+            } finally {
+                stream.close();
+            }
+        } catch (IOException exception) {
+            Log.w(TAG, format("Could not save progress for {0}.", username),
+                    exception);
+        }
+    }
+
+    /**
+     * Returns the watermark of contacts, that were synchronized completely.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * 
+     * @return the found watermark or <code>null</code> if watermark is not
+     *         known.
+     */
+    public String loadWatermark(Account account) {
+        return preferences.getString(account.name, null);
+    }
+
+    /**
+     * Saves the watermark of contacts, that were synchronized completely.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * @param watermark
+     *            the watermark or <code>null</code> if watermark is not
+     *            known.
+     */
+    public void saveWatermark(Account account, String watermark) {
+        preferences.edit().putString(account.name, watermark).commit();
+    }
+
+    /**
+     * Removes checkpoint.
+     */
+    public void clear() {
+        context.deleteFile(CHECKPOINT_FILE);
+        context.deleteFile(APPLIED_FILE);
+    }
+
+}
@@ -0,0 +1,168 @@
+package grytsenko.contacts.app.service.sync;
+
+import grytsenko.contacts.app.data.GroupsHandler;
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classifies loaded contacts as created, updated, moved or removed, comparing
+ * them with synchronized contacts.
+ * 
+ * <p>
+ * Contacts, that are up to date, are not kept, so memory usage depends on
+ * number of synchronized contacts and number of changes only.
+ */
+public class ContactsDiff implements GroupsHandler {
+
+    private final Map<String, SyncedContact> syncedContacts;
+    private final Map<String, SyncedContact> unseenContacts;
+
+    private final List<Group> groups;
+    private final Map<String, Set<String>> loadedMemberships;
+
+    private final List<Contact> createdContacts;
+    private final Set<String> createdUsernames;
+    private final List<Contact> updatedContacts;
+    private final List<String> movedUsernames;
+    private final Map<String, Set<String>> memberships;
+
+    private int loadedNum;
+
+    /**
+     * Creates diff for the given synchronized contacts.
+     * 
+     * @param syncedContacts
+     *            the synchronized contacts by usernames.
+     */
+    public ContactsDiff(Map<String, SyncedContact> syncedContacts) {
+        if (syncedContacts == null) {
+            throw new IllegalArgumentException("Contacts not defined.");
+        }
+
+        this.syncedContacts = syncedContacts;
+        unseenContacts = new HashMap<String, SyncedContact>(syncedContacts);
+
+        groups = new ArrayList<Group>();
+        loadedMemberships = new HashMap<String, Set<String>>();
+
+        createdContacts = new ArrayList<Contact>();
+        createdUsernames = new HashSet<String>();
+        updatedContacts = new ArrayList<Contact>();
+        movedUsernames = new ArrayList<String>();
+        memberships = new HashMap<String, Set<String>>();
+    }
+
+    @Override
+    public void handleGroup(Group loadedGroup) {
+        String name = loadedGroup.getName();
+        if (loadedGroup.getMembers() != null) {
+            for (String username : loadedGroup.getMembers()) {
+                Set<String> names = loadedMemberships.get(username);
+                if (names == null) {
+                    names = new HashSet<String>();
+                    loadedMemberships.put(username, names);
+                }
+                names.add(name);
+            }
+        }
+
+        Group group = new Group();
+        group.setName(name);
+        group.setTitle(loadedGroup.getTitle());
+        groups.add(group);
+    }
+
+    @Override
+    public void handle(Contact loadedContact) {
+        ++loadedNum;
+
+        String username = loadedContact.getUsername();
+        Set<String> loadedGroups = loadedMemberships.remove(username);
+        if (loadedGroups == null) {
+            loadedGroups = new HashSet<String>();
+        }
+
+        SyncedContact syncedContact = unseenContacts.remove(username);
+        if (syncedContact == null) {
+            // Contact can be repeated in response, it is created once.
+            if (!syncedContacts.containsKey(username)
+                    && createdUsernames.add(username)) {
+                createdContacts.add(loadedContact);
+                memberships.put(username, loadedGroups);
+            }
+            return;
+        }
+
+        boolean moved = !loadedGroups.equals(syncedContact.getGroups());
+        if (moved) {
+            memberships.put(username, loadedGroups);
+        }
+
+        if (!loadedContact.getHash().equals(syncedContact.getHash())) {
+            updatedContacts.add(loadedContact);
+        } else if (moved) {
+            movedUsernames.add(username);
+        }
+    }
+
+    /**
+     * Returns the number of handled contacts.
+     */
+    public int getLoadedNum() {
+        return loadedNum;
+    }
+
+    /**
+     * Returns the loaded groups without their members.
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the contacts, that should be created.
+     */
+    public List<Contact> getCreatedContacts() {
+        return createdContacts;
+    }
+
+    /**
+     * Returns the contacts, that should be updated.
+     */
+    public List<Contact> getUpdatedContacts() {
+        return updatedContacts;
+    }
+
+    /**
+     * Returns the usernames of contacts, that are up to date, but should be
+     * moved to other groups.
+     */
+    public List<String> getMovedUsernames() {
+        return movedUsernames;
+    }
+
+    /**
+     * Returns the names of groups by usernames for contacts, whose groups
+     * should be set.
+     */
+    public Map<String, Set<String>> getMemberships() {
+        return memberships;
+    }
+
+    /**
+     * Returns the synchronized contacts, that were not loaded and should be
+     * removed.
+     */
+    public Collection<SyncedContact> getRemovedContacts() {
+        return unseenContacts.values();
+    }
+
+}
@@ -2,11 +2,15 @@ package grytsenko.contacts.app.service.sync;
 
 import static java.text.MessageFormat.format;
 import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.util.StringUtils;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import android.accounts.Account;
 import android.content.ContentProviderOperation;
@@ -35,6 +39,11 @@ public class ContactsManager {
 
     private static final String TAG = ContactsManager.class.getName();
 
+    /**
+     * SQLite limits number of arguments in one query.
+     */
+    private static final int MAX_SELECTION_ARGS = 500;
+
     private ContentResolver contentResolver;
 
     /**
@@ -52,46 +61,91 @@ public class ContactsManager {
     }
 
     /**
-     * Returns all contacts from specified group.
+     * Returns all contacts of account together with their groups.
+     * 
+     * <p>
+     * Contacts and their memberships are loaded using two queries, whatever
+     * the number of groups.
      * 
-     * @param group
-     *            the group where contacts are searched.
+     * @param account
+     *            the account of user, who performs operation.
+     * @param groups
+     *            the known groups of account.
      * 
-     * @return the found contacts.
+     * @return the found contacts by usernames.
      */
-    public Map<String, SyncedContact> allFromGroup(SyncedGroup group) {
-        String[] projection = new String[] { GroupMembership.RAW_CONTACT_ID };
-        String selection = GroupMembership.GROUP_ROW_ID + "=? and "
-                + GroupMembership.MIMETYPE + "=?";
-        Cursor cursor = contentResolver.query(Data.CONTENT_URI, projection,
-                selection, new String[] { Long.toString(group.getId()),
-                        GroupMembership.CONTENT_ITEM_TYPE }, null);
-
+    public Map<String, SyncedContact> allOfAccount(Account account,
+            Collection<SyncedGroup> groups) {
+        String[] projection = new String[] { RawContacts._ID,
+                RawContacts.SYNC1, RawContacts.SYNC2, RawContacts.SYNC3 };
+        String selection = RawContacts.ACCOUNT_NAME + "=? and "
+                + RawContacts.ACCOUNT_TYPE + "=? and " + RawContacts.DELETED
+                + "=0";
+        String[] selectionArgs = new String[] { account.name, account.type };
+        Cursor cursor = contentResolver.query(RawContacts.CONTENT_URI,
+                projection, selection, selectionArgs, null);
+
+        Map<Long, SyncedContact> contactsById = new HashMap<Long, SyncedContact>();
         try {
-            int contactsNum = cursor.getCount();
-            Log.d(TAG,
-                    format("Found {0} contacts in group {1}.", contactsNum,
-                            group.getName()));
-            if (!cursor.moveToFirst()) {
-                return Collections.emptyMap();
-            }
-
-            Map<String, SyncedContact> contacts = new HashMap<String, SyncedContact>(
-                    contactsNum);
-            do {
-                long contactId = cursor.getLong(cursor
-                        .getColumnIndexOrThrow(GroupMembership.RAW_CONTACT_ID));
-                SyncedContact contact = findContact(contactId);
-                if (contact == null) {
+            int idColumn = cursor.getColumnIndexOrThrow(RawContacts._ID);
+            int usernameColumn = cursor.getColumnIndexOrThrow(RawContacts.SYNC1);
+            int hashColumn = cursor.getColumnIndexOrThrow(RawContacts.SYNC2);
+            int photoUrlColumn = cursor
+                    .getColumnIndexOrThrow(RawContacts.SYNC3);
+            while (cursor.moveToNext()) {
+                String username = cursor.getString(usernameColumn);
+                if (username == null) {
                     continue;
                 }
-                contacts.put(contact.getUsername(), contact);
-            } while (cursor.moveToNext());
 
-            return contacts;
+                long id = cursor.getLong(idColumn);
+                contactsById.put(id, SyncedContact.create(id, username,
+                        cursor.getString(hashColumn),
+                        cursor.getString(photoUrlColumn)));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        Map<Long, String> groupNames = new HashMap<Long, String>();
+        for (SyncedGroup group : groups) {
+            groupNames.put(group.getId(), group.getName());
+        }
+
+        projection = new String[] { GroupMembership.RAW_CONTACT_ID,
+                GroupMembership.GROUP_ROW_ID };
+        selection = RawContacts.ACCOUNT_NAME + "=? and "
+                + RawContacts.ACCOUNT_TYPE + "=? and " + Data.MIMETYPE + "=?";
+        selectionArgs = new String[] { account.name, account.type,
+                GroupMembership.CONTENT_ITEM_TYPE };
+        cursor = contentResolver.query(Data.CONTENT_URI, projection,
+                selection, selectionArgs, null);
+
+        try {
+            int idColumn = cursor
+                    .getColumnIndexOrThrow(GroupMembership.RAW_CONTACT_ID);
+            int groupColumn = cursor
+                    .getColumnIndexOrThrow(GroupMembership.GROUP_ROW_ID);
+            while (cursor.moveToNext()) {
+                SyncedContact contact = contactsById.get(cursor
+                        .getLong(idColumn));
+                String groupName = groupNames.get(cursor.getLong(groupColumn));
+                if (contact != null && groupName != null) {
+                    contact.getGroups().add(groupName);
+                }
+            }
         } finally {
             cursor.close();
         }
+
+        Map<String, SyncedContact> contacts = new HashMap<String, SyncedContact>(
+                contactsById.size());
+        for (SyncedContact contact : contactsById.values()) {
+            contacts.put(contact.getUsername(), contact);
+        }
+
+        Log.d(TAG, format("Found {0} contacts.", contacts.size()));
+        return contacts;
     }
 
     /**
@@ -116,13 +170,13 @@ public class ContactsManager {
 
             String username = cursor.getString(cursor
                     .getColumnIndexOrThrow(RawContacts.SYNC1));
-            String version = cursor.getString(cursor
+            String hash = cursor.getString(cursor
                     .getColumnIndexOrThrow(RawContacts.SYNC2));
             String unsyncedPhotoUrl = cursor.getString(cursor
                     .getColumnIndexOrThrow(RawContacts.SYNC3));
 
             return SyncedContact
-                    .create(id, username, version, unsyncedPhotoUrl);
+                    .create(id, username, hash, unsyncedPhotoUrl);
         } finally {
             cursor.close();
         }
@@ -133,8 +187,8 @@ public class ContactsManager {
      * 
      * @param account
      *            the account of user, who performs operation.
-     * @param group
-     *            the group for contact.
+     * @param groups
+     *            the groups for contact.
      * @param loadedContact
      *            the loaded contact with new data.
      * 
@@ -143,22 +197,23 @@ public class ContactsManager {
      * @throws SyncOperationException
      *             if contact could not be created.
      */
-    public SyncedContact createContact(Account account, SyncedGroup group,
-            Contact loadedContact) throws SyncOperationException {
+    public SyncedContact createContact(Account account,
+            Collection<SyncedGroup> groups, Contact loadedContact)
+            throws SyncOperationException {
         String username = loadedContact.getUsername();
-        String version = loadedContact.getVersion();
+        String hash = loadedContact.getHash();
         String unsyncedPhotoUrl = loadedContact.getPhotoUrl();
 
         Log.d(TAG,
-                format("Create contact for {0} in group {1}.", username,
-                        group.getName()));
+                format("Create contact for {0} in {1} groups.", username,
+                        groups.size()));
 
         ArrayList<ContentProviderOperation> batch = new ArrayList<ContentProviderOperation>();
         batch.add(ContentProviderOperation.newInsert(RawContacts.CONTENT_URI)
                 .withValue(RawContacts.ACCOUNT_NAME, account.name)
                 .withValue(RawContacts.ACCOUNT_TYPE, account.type)
                 .withValue(RawContacts.SYNC1, username)
-                .withValue(RawContacts.SYNC2, version)
+                .withValue(RawContacts.SYNC2, hash)
                 .withValue(RawContacts.SYNC3, unsyncedPhotoUrl).build());
 
         ContentValues name = new ContentValues();
@@ -179,8 +234,10 @@ public class ContactsManager {
 
         batch.add(doInsert(Organization.CONTENT_ITEM_TYPE,
                 Organization.OFFICE_LOCATION, loadedContact.getLocation()));
-        batch.add(doInsert(GroupMembership.CONTENT_ITEM_TYPE,
-                GroupMembership.GROUP_ROW_ID, group.getId()));
+        for (SyncedGroup group : groups) {
+            batch.add(doInsert(GroupMembership.CONTENT_ITEM_TYPE,
+                    GroupMembership.GROUP_ROW_ID, group.getId()));
+        }
 
         batch.add(doInsert(Photo.CONTENT_ITEM_TYPE, Photo.PHOTO, null));
 
@@ -190,23 +247,114 @@ public class ContactsManager {
             long id = ContentUris.parseId(results[0].uri);
 
             Log.d(TAG, format("Contact for {0} was created.", username));
-            return SyncedContact
-                    .create(id, username, version, unsyncedPhotoUrl);
+            SyncedContact contact = SyncedContact.create(id, username, hash,
+                    unsyncedPhotoUrl);
+            contact.setGroups(namesOf(groups));
+            return contact;
         } catch (Exception exception) {
             throw new SyncOperationException("Could not create contact.",
                     exception);
         }
     }
 
+    /**
+     * Finds synchronized data of contacts.
+     * 
+     * <p>
+     * Data of all contacts is loaded using one query per
+     * {@value #MAX_SELECTION_ARGS} contacts.
+     * 
+     * @param syncedContacts
+     *            the synchronized contacts.
+     * 
+     * @return the data of contacts by their identifiers.
+     */
+    public Map<Long, Contact> findData(Collection<SyncedContact> syncedContacts) {
+        Map<Long, Contact> data = new HashMap<Long, Contact>();
+
+        List<SyncedContact> contacts = new ArrayList<SyncedContact>(
+                syncedContacts);
+        for (int from = 0; from < contacts.size(); from += MAX_SELECTION_ARGS) {
+            int to = Math.min(from + MAX_SELECTION_ARGS, contacts.size());
+            findData(contacts.subList(from, to), data);
+        }
+
+        Log.d(TAG, format("Found data for {0} contacts.", data.size()));
+        return data;
+    }
+
+    private void findData(List<SyncedContact> syncedContacts,
+            Map<Long, Contact> data) {
+        String[] projection = new String[] { Data.RAW_CONTACT_ID,
+                Data.MIMETYPE, Data.DATA1, StructuredName.GIVEN_NAME,
+                StructuredName.FAMILY_NAME, Organization.OFFICE_LOCATION };
+
+        StringBuilder selection = new StringBuilder();
+        String[] selectionArgs = new String[syncedContacts.size()];
+        selection.append(Data.RAW_CONTACT_ID).append(" in (");
+        for (int i = 0; i < selectionArgs.length; ++i) {
+            selection.append(i == 0 ? "?" : ",?");
+            selectionArgs[i] = Long.toString(syncedContacts.get(i).getId());
+        }
+        selection.append(")");
+
+        Cursor cursor = contentResolver.query(Data.CONTENT_URI, projection,
+                selection.toString(), selectionArgs, null);
+
+        try {
+            int idColumn = cursor.getColumnIndexOrThrow(Data.RAW_CONTACT_ID);
+            int mimeColumn = cursor.getColumnIndexOrThrow(Data.MIMETYPE);
+            int data1Column = cursor.getColumnIndexOrThrow(Data.DATA1);
+            int givenNameColumn = cursor
+                    .getColumnIndexOrThrow(StructuredName.GIVEN_NAME);
+            int familyNameColumn = cursor
+                    .getColumnIndexOrThrow(StructuredName.FAMILY_NAME);
+            int locationColumn = cursor
+                    .getColumnIndexOrThrow(Organization.OFFICE_LOCATION);
+
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(idColumn);
+                Contact contact = data.get(id);
+                if (contact == null) {
+                    contact = new Contact();
+                    data.put(id, contact);
+                }
+
+                String mime = cursor.getString(mimeColumn);
+                if (StructuredName.CONTENT_ITEM_TYPE.equals(mime)) {
+                    contact.setFirstName(cursor.getString(givenNameColumn));
+                    contact.setLastName(cursor.getString(familyNameColumn));
+                } else if (Email.CONTENT_ITEM_TYPE.equals(mime)) {
+                    contact.setMail(cursor.getString(data1Column));
+                } else if (Phone.CONTENT_ITEM_TYPE.equals(mime)) {
+                    contact.setPhone(cursor.getString(data1Column));
+                } else if (Organization.CONTENT_ITEM_TYPE.equals(mime)) {
+                    contact.setLocation(cursor.getString(locationColumn));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Updates existing contact.
      * 
+     * <p>
+     * Only fields, that differ from synchronized data, are updated.
+     * 
      * @param account
      *            the account of user, who performs operation.
      * @param syncedContact
      *            the synchronized contact.
+     * @param syncedData
+     *            the synchronized data of contact or <code>null</code> if it
+     *            is not known.
      * @param loadedContact
      *            the loaded contact with new data.
+     * @param groups
+     *            the new groups for contact or <code>null</code> if groups
+     *            are not changed.
      * 
      * @return the updated contact.
      * 
@@ -214,48 +362,111 @@ public class ContactsManager {
      *             if contact could not be updated.
      */
     public SyncedContact updateContact(Account account,
-            SyncedContact syncedContact, Contact loadedContact)
+            SyncedContact syncedContact, Contact syncedData,
+            Contact loadedContact, Collection<SyncedGroup> groups)
             throws SyncOperationException {
         long id = syncedContact.getId();
         String username = syncedContact.getUsername();
-        String version = loadedContact.getVersion();
+        String hash = loadedContact.getHash();
         String unsyncedPhotoUrl = loadedContact.getPhotoUrl();
 
         Log.d(TAG, format("Update contact for {0}.", username));
 
+        if (syncedData == null) {
+            syncedData = new Contact();
+        }
+
         ArrayList<ContentProviderOperation> batch = new ArrayList<ContentProviderOperation>();
 
-        batch.add(doUpdate(id, StructuredName.CONTENT_ITEM_TYPE,
-                StructuredName.GIVEN_NAME, loadedContact.getFirstName()));
-        batch.add(doUpdate(id, StructuredName.CONTENT_ITEM_TYPE,
-                StructuredName.FAMILY_NAME, loadedContact.getLastName()));
+        ContentValues name = new ContentValues();
+        if (isChanged(syncedData.getFirstName(), loadedContact.getFirstName())) {
+            name.put(StructuredName.GIVEN_NAME, loadedContact.getFirstName());
+        }
+        if (isChanged(syncedData.getLastName(), loadedContact.getLastName())) {
+            name.put(StructuredName.FAMILY_NAME, loadedContact.getLastName());
+        }
+        if (name.size() > 0) {
+            batch.add(doUpdate(id, StructuredName.CONTENT_ITEM_TYPE, name));
+        }
+
+        if (isChanged(syncedData.getMail(), loadedContact.getMail())) {
+            batch.add(doUpdate(id, Email.CONTENT_ITEM_TYPE, Email.ADDRESS,
+                    loadedContact.getMail()));
+        }
+        if (isChanged(syncedData.getPhone(), loadedContact.getPhone())) {
+            batch.add(doUpdate(id, Phone.CONTENT_ITEM_TYPE, Phone.NUMBER,
+                    loadedContact.getPhone()));
+        }
 
-        batch.add(doUpdate(id, Email.CONTENT_ITEM_TYPE, Email.ADDRESS,
-                loadedContact.getMail()));
-        batch.add(doUpdate(id, Phone.CONTENT_ITEM_TYPE, Phone.NUMBER,
-                loadedContact.getPhone()));
+        if (isChanged(syncedData.getLocation(), loadedContact.getLocation())) {
+            batch.add(doUpdate(id, Organization.CONTENT_ITEM_TYPE,
+                    Organization.OFFICE_LOCATION, loadedContact.getLocation()));
+        }
 
-        batch.add(doUpdate(id, Organization.CONTENT_ITEM_TYPE,
-                Organization.OFFICE_LOCATION, loadedContact.getLocation()));
+        Log.d(TAG,
+                format("Update {0} rows of data for {1}.", batch.size(),
+                        username));
 
         Uri contactUri = ContentUris
                 .withAppendedId(RawContacts.CONTENT_URI, id);
         batch.add(ContentProviderOperation.newUpdate(contactUri)
-                .withValue(RawContacts.SYNC2, version)
+                .withValue(RawContacts.SYNC2, hash)
                 .withValue(RawContacts.SYNC3, unsyncedPhotoUrl).build());
 
+        if (groups != null) {
+            replaceGroups(batch, id, groups);
+        }
+
         try {
             contentResolver.applyBatch(ContactsContract.AUTHORITY, batch);
             Log.d(TAG, format("Contact for {0} was updated.", username));
 
-            return SyncedContact
-                    .create(id, username, version, unsyncedPhotoUrl);
+            SyncedContact contact = SyncedContact.create(id, username, hash,
+                    unsyncedPhotoUrl);
+            contact.setGroups(groups != null ? namesOf(groups)
+                    : syncedContact.getGroups());
+            return contact;
         } catch (Exception exception) {
             throw new SyncOperationException("Could not update photo.",
                     exception);
         }
     }
 
+    /**
+     * Updates groups of existing contact.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * @param syncedContact
+     *            the synchronized contact.
+     * @param groups
+     *            the new groups for contact.
+     * 
+     * @throws SyncOperationException
+     *             if contact could not be updated.
+     */
+    public void updateGroups(Account account, SyncedContact syncedContact,
+            Collection<SyncedGroup> groups) throws SyncOperationException {
+        long id = syncedContact.getId();
+        String username = syncedContact.getUsername();
+        Log.d(TAG,
+                format("Move contact for {0} to {1} groups.", username,
+                        groups.size()));
+
+        ArrayList<ContentProviderOperation> batch = new ArrayList<ContentProviderOperation>();
+        replaceGroups(batch, id, groups);
+
+        try {
+            contentResolver.applyBatch(ContactsContract.AUTHORITY, batch);
+            Log.d(TAG, format("Groups for {0} were updated.", username));
+
+            syncedContact.setGroups(namesOf(groups));
+        } catch (Exception exception) {
+            throw new SyncOperationException("Could not update groups.",
+                    exception);
+        }
+    }
+
     /**
      * Updates photo of existing contact.
      * 
@@ -329,6 +540,37 @@ public class ContactsManager {
         }
     }
 
+    /**
+     * Removes all memberships of contact and adds it to the given groups.
+     */
+    private static void replaceGroups(List<ContentProviderOperation> batch,
+            long id, Collection<SyncedGroup> groups) {
+        String selection = Data.RAW_CONTACT_ID + "=? and " + Data.MIMETYPE
+                + "=?";
+        batch.add(ContentProviderOperation
+                .newDelete(Data.CONTENT_URI)
+                .withSelection(
+                        selection,
+                        new String[] { Long.toString(id),
+                                GroupMembership.CONTENT_ITEM_TYPE }).build());
+
+        for (SyncedGroup group : groups) {
+            batch.add(ContentProviderOperation.newInsert(Data.CONTENT_URI)
+                    .withValue(Data.RAW_CONTACT_ID, id)
+                    .withValue(Data.MIMETYPE, GroupMembership.CONTENT_ITEM_TYPE)
+                    .withValue(GroupMembership.GROUP_ROW_ID, group.getId())
+                    .build());
+        }
+    }
+
+    private static Set<String> namesOf(Collection<SyncedGroup> groups) {
+        Set<String> names = new HashSet<String>();
+        for (SyncedGroup group : groups) {
+            names.add(group.getName());
+        }
+        return names;
+    }
+
     private static <T> ContentProviderOperation doInsert(String mime,
             String key, T value) {
         return ContentProviderOperation.newInsert(Data.CONTENT_URI)
@@ -354,4 +596,27 @@ public class ContactsManager {
                 .withValue(key, value).build();
     }
 
+    private static ContentProviderOperation doUpdate(long id, String mime,
+            ContentValues values) {
+        String selection = Data.RAW_CONTACT_ID + "=? and " + Data.MIMETYPE
+                + "=?";
+        return ContentProviderOperation
+                .newUpdate(Data.CONTENT_URI)
+                .withSelection(selection,
+                        new String[] { Long.toString(id), mime })
+                .withValues(values).build();
+    }
+
+    /**
+     * Checks that value of field was changed. Empty values are considered
+     * equal to missing values.
+     */
+    private static boolean isChanged(String syncedValue, String loadedValue) {
+        if (StringUtils.isNullOrEmpty(syncedValue)) {
+            return !StringUtils.isNullOrEmpty(loadedValue);
+        }
+
+        return !syncedValue.equals(loadedValue);
+    }
+
 }
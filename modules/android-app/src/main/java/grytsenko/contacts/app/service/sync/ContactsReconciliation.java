@@ -0,0 +1,97 @@
+package grytsenko.contacts.app.service.sync;
+
+import grytsenko.contacts.app.data.ReconciliationHandler;
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.ContactsSummary;
+import grytsenko.contacts.common.model.Group;
+import grytsenko.contacts.common.util.ContactsDigest;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares synchronized contacts with groups of user by buckets.
+ * 
+ * <p>
+ * Only synchronized contacts from differing buckets are compared with loaded
+ * contacts, so contacts, that were not loaded, are removed only if their
+ * buckets differ.
+ */
+public class ContactsReconciliation implements ReconciliationHandler {
+
+    private final Map<String, SyncedContact> syncedContacts;
+    private final ContactsDigest digest;
+
+    private ContactsDiff diff;
+
+    /**
+     * Creates reconciliation for the given synchronized contacts.
+     * 
+     * @param syncedContacts
+     *            the synchronized contacts by usernames.
+     */
+    public ContactsReconciliation(Map<String, SyncedContact> syncedContacts) {
+        if (syncedContacts == null) {
+            throw new IllegalArgumentException("Contacts not defined.");
+        }
+
+        this.syncedContacts = syncedContacts;
+
+        digest = new ContactsDigest(ContactsDigest.bucketsFor(syncedContacts
+                .size()));
+        for (SyncedContact contact : syncedContacts.values()) {
+            digest.add(contact.getUsername(), contact.getHash(),
+                    contact.getGroups());
+        }
+    }
+
+    /**
+     * Returns the summary of synchronized contacts, that is sent to service.
+     */
+    public ContactsSummary getSummary() {
+        ContactsSummary summary = new ContactsSummary();
+        summary.setDigests(digest.getDigests());
+        return summary;
+    }
+
+    @Override
+    public void handleBuckets(List<Integer> buckets) {
+        Set<Integer> differingBuckets = new HashSet<Integer>(buckets);
+
+        Map<String, SyncedContact> differingContacts = new HashMap<String, SyncedContact>();
+        for (SyncedContact contact : syncedContacts.values()) {
+            String username = contact.getUsername();
+            if (differingBuckets.contains(digest.bucketOf(username))) {
+                differingContacts.put(username, contact);
+            }
+        }
+
+        diff = new ContactsDiff(differingContacts);
+    }
+
+    @Override
+    public void handleGroup(Group group) {
+        getDiff().handleGroup(group);
+    }
+
+    @Override
+    public void handle(Contact contact) {
+        getDiff().handle(contact);
+    }
+
+    /**
+     * Returns the difference between loaded contacts and synchronized
+     * contacts from differing buckets.
+     */
+    public ContactsDiff getDiff() {
+        if (diff == null) {
+            throw new IllegalStateException("Buckets not handled.");
+        }
+
+        return diff;
+    }
+
+}
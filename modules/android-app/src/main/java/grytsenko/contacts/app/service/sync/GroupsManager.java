@@ -3,6 +3,8 @@ package grytsenko.contacts.app.service.sync;
 import static java.text.MessageFormat.format;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 
 import android.accounts.Account;
 import android.content.ContentProviderOperation;
@@ -77,6 +79,45 @@ public class GroupsManager {
         }
     }
 
+    /**
+     * Finds all groups of account.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * 
+     * @return the found groups by their names.
+     */
+    public Map<String, SyncedGroup> allGroups(Account account) {
+        String[] projection = new String[] { Groups._ID, Groups.SYNC1,
+                Groups.TITLE };
+        String selection = Groups.ACCOUNT_NAME + "=? and "
+                + Groups.ACCOUNT_TYPE + "=? and " + Groups.DELETED + "=0";
+        Cursor cursor = contentResolver.query(Groups.CONTENT_URI, projection,
+                selection, new String[] { account.name, account.type }, null);
+
+        try {
+            Map<String, SyncedGroup> groups = new HashMap<String, SyncedGroup>();
+
+            int idColumn = cursor.getColumnIndexOrThrow(Groups._ID);
+            int nameColumn = cursor.getColumnIndexOrThrow(Groups.SYNC1);
+            int titleColumn = cursor.getColumnIndexOrThrow(Groups.TITLE);
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(nameColumn);
+                if (name == null) {
+                    continue;
+                }
+
+                groups.put(name, SyncedGroup.create(cursor.getLong(idColumn),
+                        name, cursor.getString(titleColumn)));
+            }
+
+            Log.d(TAG, format("Found {0} groups.", groups.size()));
+            return groups;
+        } finally {
+            cursor.close();
+        }
+    }
+
     /**
      * Creates a group.
      * 
@@ -0,0 +1,121 @@
+package grytsenko.contacts.app.service.sync;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Helps manage local index of synchronized contacts.
+ * 
+ * <p>
+ * Index is removed before contacts provider is changed and saved again after
+ * synchronization, so saved index always matches contacts provider. Index
+ * is compared with contacts provider once a day, because user can change
+ * contacts too.
+ */
+public class IndexManager {
+
+    private static final String TAG = IndexManager.class.getName();
+
+    private static final String INDEX_FILE = "sync_index.json";
+
+    /**
+     * Index is ignored, if it was compared with contacts provider earlier.
+     */
+    private static final long MAX_AGE = 24L * 60L * 60L * 1000L;
+
+    private Context context;
+    private ObjectMapper mapper;
+
+    /**
+     * Creates manager in the specified context.
+     * 
+     * @param context
+     *            the context, where manager is used.
+     */
+    public IndexManager(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context not defined.");
+        }
+
+        this.context = context;
+        mapper = new ObjectMapper();
+        mapper.configure(
+                DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES,
+                false);
+    }
+
+    /**
+     * Loads index of account.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * 
+     * @return the found index or <code>null</code> if there is no suitable
+     *         index.
+     */
+    public SyncIndex load(Account account) {
+        SyncIndex index;
+        try {
+            index = mapper.readValue(context.openFileInput(INDEX_FILE),
+                    SyncIndex.class);
+        } catch (FileNotFoundException exception) {
+            return null;
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not read index.", exception);
+            clear();
+            return null;
+        }
+
+        if (!account.name.equals(index.getAccountName())) {
+            Log.d(TAG, "Index belongs to another account.");
+            clear();
+            return null;
+        }
+
+        long age = System.currentTimeMillis() - index.getVerifiedAt();
+        if (age < 0 || age > MAX_AGE) {
+            Log.d(TAG, "Index should be verified.");
+            clear();
+            return null;
+        }
+
+        return index;
+    }
+
+    /**
+     * Saves index.
+     * 
+     * @param index
+     *            the index, that matches contacts provider.
+     */
+    public void save(SyncIndex index) {
+        try {
+            OutputStream stream = context.openFileOutput(INDEX_FILE,
+                    Context.MODE_PRIVATE);
+            try {
+                mapper.writeValue(stream, index);
+            } finally {
+                stream.close();
+            }
+        } catch (IOException exception) {
+            Log.w(TAG, "Could not save index.", exception);
+            clear();
+        }
+    }
+
+    /**
+     * Removes index.
+     */
+    public void clear() {
+        context.deleteFile(INDEX_FILE);
+    }
+
+}
@@ -0,0 +1,91 @@
+package grytsenko.contacts.app.service.sync;
+
+import static java.text.MessageFormat.format;
+import grytsenko.contacts.app.service.sync.SyncStats.Counter;
+
+import java.util.Random;
+
+import android.accounts.Account;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.provider.ContactsContract;
+import android.util.Log;
+
+/**
+ * Helps manage periodic synchronization of accounts.
+ * 
+ * @see SyncSchedule
+ */
+public class ScheduleManager {
+
+    private static final String TAG = ScheduleManager.class.getName();
+
+    private static final String PREFERENCES_NAME = "sync_schedule";
+
+    private static final String RATE_SUFFIX = ".rate";
+    private static final String SYNCED_AT_SUFFIX = ".syncedAt";
+
+    private SharedPreferences preferences;
+    private Random random;
+
+    /**
+     * Creates manager in the specified context.
+     * 
+     * @param context
+     *            the context, where manager is used.
+     */
+    public ScheduleManager(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context not defined.");
+        }
+
+        preferences = context.getSharedPreferences(PREFERENCES_NAME,
+                Context.MODE_PRIVATE);
+        random = new Random();
+    }
+
+    /**
+     * Updates periodic synchronization of account after synchronization.
+     * 
+     * <p>
+     * Only successful synchronizations change the rate of changes. Android
+     * retries failed synchronizations itself.
+     * 
+     * @param account
+     *            the synchronized account.
+     * @param stats
+     *            the statistics of synchronization.
+     * @param failed
+     *            <code>true</code> if synchronization failed.
+     */
+    public synchronized void update(Account account, SyncStats stats,
+            boolean failed) {
+        SyncSchedule schedule = new SyncSchedule(random);
+        schedule.restore(preferences.getFloat(account.name + RATE_SUFFIX, -1),
+                preferences.getLong(account.name + SYNCED_AT_SUFFIX, 0));
+
+        if (!failed && !stats.isCanceled()) {
+            long changes = stats.get(Counter.CREATED)
+                    + stats.get(Counter.UPDATED) + stats.get(Counter.MOVED)
+                    + stats.get(Counter.REMOVED);
+            schedule.addResult(stats.getFinishedAt(), changes);
+
+            preferences
+                    .edit()
+                    .putFloat(account.name + RATE_SUFFIX,
+                            (float) schedule.getRate())
+                    .putLong(account.name + SYNCED_AT_SUFFIX,
+                            schedule.getSyncedAt()).commit();
+        }
+
+        long interval = schedule.nextInterval();
+        ContentResolver.addPeriodicSync(account, ContactsContract.AUTHORITY,
+                new Bundle(), interval / 1000L);
+
+        Log.d(TAG, format("Next sync of {0} in {1} min, {2} changes/hour.",
+                account.name, interval / 60000L, schedule.getRate()));
+    }
+
+}
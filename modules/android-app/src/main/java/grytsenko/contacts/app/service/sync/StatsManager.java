@@ -0,0 +1,131 @@
+package grytsenko.contacts.app.service.sync;
+
+import grytsenko.contacts.app.service.sync.SyncStats.Counter;
+import grytsenko.contacts.app.service.sync.SyncStats.Phase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+/**
+ * Helps manage statistics of recent synchronizations.
+ */
+public class StatsManager {
+
+    private static final String TAG = StatsManager.class.getName();
+
+    private static final String PREFERENCES_NAME = "sync_stats";
+    private static final String HISTORY_KEY = "history";
+
+    private static final String STARTED_AT = "startedAt";
+    private static final String FINISHED_AT = "finishedAt";
+    private static final String CANCELED = "canceled";
+
+    /**
+     * The number of synchronizations, that are kept in history.
+     */
+    private static final int HISTORY_SIZE = 20;
+
+    private SharedPreferences preferences;
+
+    /**
+     * Creates manager in the specified context.
+     * 
+     * @param context
+     *            the context, where manager is used.
+     */
+    public StatsManager(Context context) {
+        if (context == null) {
+            throw new IllegalArgumentException("Context not defined.");
+        }
+
+        preferences = context.getSharedPreferences(PREFERENCES_NAME,
+                Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Adds statistics of synchronization to history. The oldest statistics
+     * are removed, if history is full.
+     * 
+     * @param stats
+     *            the statistics of synchronization.
+     */
+    public synchronized void addStats(SyncStats stats) {
+        List<SyncStats> history = getHistory();
+        history.add(stats);
+        while (history.size() > HISTORY_SIZE) {
+            history.remove(0);
+        }
+
+        try {
+            JSONArray json = new JSONArray();
+            for (SyncStats item : history) {
+                json.put(toJson(item));
+            }
+            preferences.edit().putString(HISTORY_KEY, json.toString())
+                    .commit();
+        } catch (JSONException exception) {
+            Log.w(TAG, "Could not save statistics.", exception);
+        }
+    }
+
+    /**
+     * Returns statistics of recent synchronizations.
+     * 
+     * @return the statistics from the oldest to the newest.
+     */
+    public synchronized List<SyncStats> getHistory() {
+        List<SyncStats> history = new ArrayList<SyncStats>();
+
+        String saved = preferences.getString(HISTORY_KEY, null);
+        if (saved == null) {
+            return history;
+        }
+
+        try {
+            JSONArray json = new JSONArray(saved);
+            for (int i = 0; i < json.length(); ++i) {
+                history.add(fromJson(json.getJSONObject(i)));
+            }
+        } catch (JSONException exception) {
+            Log.w(TAG, "Could not read statistics.", exception);
+        }
+
+        return history;
+    }
+
+    private static JSONObject toJson(SyncStats stats) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put(STARTED_AT, stats.getStartedAt());
+        json.put(FINISHED_AT, stats.getFinishedAt());
+        json.put(CANCELED, stats.isCanceled());
+        for (Phase phase : Phase.values()) {
+            json.put(phase.name(), stats.getDuration(phase));
+        }
+        for (Counter counter : Counter.values()) {
+            json.put(counter.name(), stats.get(counter));
+        }
+        return json;
+    }
+
+    private static SyncStats fromJson(JSONObject json) throws JSONException {
+        SyncStats stats = new SyncStats(json.getLong(STARTED_AT));
+        stats.setFinishedAt(json.getLong(FINISHED_AT));
+        stats.setCanceled(json.optBoolean(CANCELED));
+        for (Phase phase : Phase.values()) {
+            stats.setDuration(phase, json.optLong(phase.name()));
+        }
+        for (Counter counter : Counter.values()) {
+            stats.set(counter, json.optLong(counter.name()));
+        }
+        return stats;
+    }
+
+}
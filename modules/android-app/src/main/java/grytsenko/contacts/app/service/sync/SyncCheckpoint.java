@@ -0,0 +1,253 @@
+package grytsenko.contacts.app.service.sync;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Work, that remains to be done after contacts were loaded and compared with
+ * synchronized contacts.
+ * 
+ * <p>
+ * Checkpoint allows to continue synchronization, that was canceled, without
+ * loading and comparing contacts again.
+ */
+public class SyncCheckpoint {
+
+    /**
+     * Creates checkpoint for the given difference.
+     * 
+     * @param accountName
+     *            the name of account, that is synchronized.
+     * @param loadedAt
+     *            the time, when contacts were loaded.
+     * @param diff
+     *            the difference between loaded and synchronized contacts.
+     * @param syncedContacts
+     *            the synchronized contacts by usernames.
+     */
+    public static SyncCheckpoint create(String accountName, long loadedAt,
+            ContactsDiff diff, Map<String, SyncedContact> syncedContacts) {
+        SyncCheckpoint checkpoint = new SyncCheckpoint();
+
+        checkpoint.accountName = accountName;
+        checkpoint.loadedAt = loadedAt;
+
+        checkpoint.groups.addAll(diff.getGroups());
+        checkpoint.memberships.putAll(diff.getMemberships());
+
+        checkpoint.createdContacts.addAll(diff.getCreatedContacts());
+        checkpoint.updatedContacts.addAll(diff.getUpdatedContacts());
+        for (Contact contact : diff.getUpdatedContacts()) {
+            String username = contact.getUsername();
+            checkpoint.syncedIds.put(username, syncedContacts.get(username)
+                    .getId());
+        }
+        for (String username : diff.getMovedUsernames()) {
+            checkpoint.movedUsernames.add(username);
+            checkpoint.syncedIds.put(username, syncedContacts.get(username)
+                    .getId());
+        }
+        for (SyncedContact contact : diff.getRemovedContacts()) {
+            checkpoint.removedUsernames.add(contact.getUsername());
+            checkpoint.syncedIds.put(contact.getUsername(), contact.getId());
+        }
+
+        return checkpoint;
+    }
+
+    private String accountName;
+    private long loadedAt;
+    private String watermark;
+
+    private List<Group> groups = new ArrayList<Group>();
+    private Map<String, Set<String>> memberships = new HashMap<String, Set<String>>();
+
+    private List<Contact> createdContacts = new ArrayList<Contact>();
+    private List<Contact> updatedContacts = new ArrayList<Contact>();
+    private List<String> movedUsernames = new ArrayList<String>();
+    private List<String> removedUsernames = new ArrayList<String>();
+    private Map<String, Long> syncedIds = new HashMap<String, Long>();
+
+    private Set<String> appliedUsernames = new HashSet<String>();
+
+    public SyncCheckpoint() {
+    }
+
+    /**
+     * Returns the name of account, that is synchronized.
+     */
+    public String getAccountName() {
+        return accountName;
+    }
+
+    /**
+     * Sets the name of account, that is synchronized.
+     */
+    public void setAccountName(String accountName) {
+        this.accountName = accountName;
+    }
+
+    /**
+     * Returns the time, when contacts were loaded.
+     */
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * Sets the time, when contacts were loaded.
+     */
+    public void setLoadedAt(long loadedAt) {
+        this.loadedAt = loadedAt;
+    }
+
+    /**
+     * Returns the watermark of loaded contacts.
+     */
+    public String getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Sets the watermark of loaded contacts.
+     */
+    public void setWatermark(String watermark) {
+        this.watermark = watermark;
+    }
+
+    /**
+     * Returns the loaded groups.
+     */
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Sets the loaded groups.
+     */
+    public void setGroups(List<Group> groups) {
+        this.groups = groups;
+    }
+
+    /**
+     * Returns the names of groups by usernames for contacts, whose groups
+     * should be set.
+     */
+    public Map<String, Set<String>> getMemberships() {
+        return memberships;
+    }
+
+    /**
+     * Sets the names of groups by usernames.
+     */
+    public void setMemberships(Map<String, Set<String>> memberships) {
+        this.memberships = memberships;
+    }
+
+    /**
+     * Returns the contacts, that should be created.
+     */
+    public List<Contact> getCreatedContacts() {
+        return createdContacts;
+    }
+
+    /**
+     * Sets the contacts, that should be created.
+     */
+    public void setCreatedContacts(List<Contact> createdContacts) {
+        this.createdContacts = createdContacts;
+    }
+
+    /**
+     * Returns the contacts, that should be updated.
+     */
+    public List<Contact> getUpdatedContacts() {
+        return updatedContacts;
+    }
+
+    /**
+     * Sets the contacts, that should be updated.
+     */
+    public void setUpdatedContacts(List<Contact> updatedContacts) {
+        this.updatedContacts = updatedContacts;
+    }
+
+    /**
+     * Returns the usernames of contacts, that should be moved to other
+     * groups.
+     */
+    public List<String> getMovedUsernames() {
+        return movedUsernames;
+    }
+
+    /**
+     * Sets the usernames of contacts, that should be moved to other groups.
+     */
+    public void setMovedUsernames(List<String> movedUsernames) {
+        this.movedUsernames = movedUsernames;
+    }
+
+    /**
+     * Returns the usernames of contacts, that should be removed.
+     */
+    public List<String> getRemovedUsernames() {
+        return removedUsernames;
+    }
+
+    /**
+     * Sets the usernames of contacts, that should be removed.
+     */
+    public void setRemovedUsernames(List<String> removedUsernames) {
+        this.removedUsernames = removedUsernames;
+    }
+
+    /**
+     * Returns the identifiers of synchronized contacts, that should be
+     * updated, moved or removed.
+     */
+    public Map<String, Long> getSyncedIds() {
+        return syncedIds;
+    }
+
+    /**
+     * Sets the identifiers of synchronized contacts.
+     */
+    public void setSyncedIds(Map<String, Long> syncedIds) {
+        this.syncedIds = syncedIds;
+    }
+
+    /**
+     * Returns the synchronized contact, that should be updated, moved or
+     * removed.
+     */
+    public SyncedContact toSyncedContact(String username) {
+        Long id = syncedIds.get(username);
+        if (id == null) {
+            throw new IllegalArgumentException("Contact not found.");
+        }
+
+        return SyncedContact.create(id, username, null, null);
+    }
+
+    /**
+     * Checks that contact was already synchronized.
+     */
+    public boolean isApplied(String username) {
+        return appliedUsernames.contains(username);
+    }
+
+    /**
+     * Marks that contact was synchronized.
+     */
+    public void markApplied(String username) {
+        appliedUsernames.add(username);
+    }
+
+}
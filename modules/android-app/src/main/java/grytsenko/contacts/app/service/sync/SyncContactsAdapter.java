@@ -6,14 +6,23 @@ import grytsenko.contacts.app.R;
 import grytsenko.contacts.app.data.NetUtils;
 import grytsenko.contacts.app.data.NotAuthorizedException;
 import grytsenko.contacts.app.data.NotAvailableException;
+import grytsenko.contacts.app.data.NotFoundException;
 import grytsenko.contacts.app.data.RestClient;
+import grytsenko.contacts.app.service.sync.SyncStats.Counter;
+import grytsenko.contacts.app.service.sync.SyncStats.Phase;
 import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
 import grytsenko.contacts.common.util.StringUtils;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import android.accounts.Account;
 import android.accounts.AccountManager;
@@ -39,6 +48,10 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
     private ContactsManager contactsManager;
     private SettingsManager settingsManager;
     private NetworkManager networkManager;
+    private StatsManager statsManager;
+    private CheckpointManager checkpointManager;
+    private IndexManager indexManager;
+    private ScheduleManager scheduleManager;
 
     public SyncContactsAdapter(Context context, boolean autoInitialize) {
         super(context, autoInitialize);
@@ -49,6 +62,10 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
         contactsManager = new ContactsManager(context);
         settingsManager = new SettingsManager(context);
         networkManager = new NetworkManager(context);
+        statsManager = new StatsManager(context);
+        checkpointManager = new CheckpointManager(context);
+        indexManager = new IndexManager(context);
+        scheduleManager = new ScheduleManager(context);
     }
 
     @Override
@@ -61,140 +78,419 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
 
         Log.d(TAG, "Sync started.");
 
+        SyncStats stats = new SyncStats();
         try {
-            /*
-             * Synchronize group, which contains contacts of coworkers.
-             */
-            SyncedGroup groupCoworkers;
-            try {
-                groupCoworkers = syncGroupForCoworkers(account);
-            } catch (SyncOperationException exception) {
-                Log.e(TAG, "Could not sync group for coworkers.", exception);
-                return;
+            performSync(account, syncResult, stats);
+        } catch (SyncCanceledException exception) {
+            Log.w(TAG, "Sync canceled.", exception);
+            stats.setCanceled(true);
+        } finally {
+            stats.finish();
+            fillSyncResult(stats, syncResult);
+            statsManager.addStats(stats);
+            scheduleManager.update(account, stats, syncResult.hasError());
+        }
+
+        Log.d(TAG, format("Sync finished: {0}.", stats));
+    }
+
+    private void performSync(Account account, SyncResult syncResult,
+            SyncStats stats) throws SyncCanceledException {
+        /*
+         * Local index is used instead of contacts provider, if it was not
+         * invalidated.
+         */
+        stats.startPhase(Phase.GROUP);
+        SyncIndex index = indexManager.load(account);
+        Map<String, SyncedGroup> syncedGroups = index != null ? index
+                .groupsByName() : groupsManager.allGroups(account);
+
+        checkCanceled();
+
+        /*
+         * Load actual groups with their contacts and compare them with
+         * synchronized contacts, unless previous synchronization was canceled
+         * after that.
+         */
+        Map<String, SyncedContact> syncedContacts;
+        SyncCheckpoint checkpoint = checkpointManager.load(account);
+        if (checkpoint == null) {
+            stats.startPhase(Phase.LOCAL_SCAN);
+            if (index == null) {
+                index = SyncIndex.create(account.name,
+                        System.currentTimeMillis(), syncedGroups.values(),
+                        contactsManager.allOfAccount(account,
+                                syncedGroups.values()).values());
+                index.markChanged();
+            } else {
+                Log.d(TAG, "Contacts provider is not scanned.");
             }
+            syncedContacts = index.contactsByUsername();
 
             checkCanceled();
 
-            /*
-             * Load actual contacts of coworkers.
-             */
-            Map<String, Contact> loadedCoworkers;
+            stats.startPhase(Phase.LOAD);
+            ContactsDiff diff;
+            String watermark;
+            long loadedAt = System.currentTimeMillis();
+            long receivedBytes = restClient.getReceivedBytes();
+            long decodedBytes = restClient.getDecodedBytes();
             try {
-                loadedCoworkers = loadContactsOfCoworkers(account);
+                watermark = loadWatermark(account);
+                if (watermark != null
+                        && watermark.equals(checkpointManager
+                                .loadWatermark(account))) {
+                    Log.d(TAG, "Contacts were not changed.");
+                    syncUnchanged(account, syncedGroups, syncedContacts,
+                            index, stats);
+                    saveIndex(index);
+                    return;
+                }
+
+                diff = syncedContacts.isEmpty() ? loadGroups(account,
+                        syncedContacts) : reconcileGroups(account,
+                        syncedContacts);
             } catch (NotAuthorizedException exception) {
-                Log.e(TAG, "Could not access contacts of coworkers.", exception);
+                Log.e(TAG, "Could not access groups.", exception);
+                ++syncResult.stats.numAuthExceptions;
+                saveIndex(index);
                 return;
             } catch (NotAvailableException exception) {
-                Log.e(TAG, "Could not get contacts of coworkers.", exception);
+                Log.e(TAG, "Could not get groups.", exception);
+                ++syncResult.stats.numIoExceptions;
+                saveIndex(index);
                 return;
+            } finally {
+                stats.add(Counter.RECEIVED_BYTES,
+                        restClient.getReceivedBytes() - receivedBytes);
+                stats.add(Counter.DECODED_BYTES,
+                        restClient.getDecodedBytes() - decodedBytes);
             }
+            stats.set(Counter.LOADED, diff.getLoadedNum());
 
-            checkCanceled();
+            checkpoint = SyncCheckpoint.create(account.name, loadedAt, diff,
+                    syncedContacts);
+            checkpoint.setWatermark(watermark);
+            beforeChanges(index);
+            checkpointManager.save(checkpoint);
+        } else {
+            Log.d(TAG, "Continue synchronization from checkpoint.");
+            syncedContacts = Collections.emptyMap();
 
             /*
-             * Synchronize contacts of coworkers.
+             * Contacts were not scanned, so index is not saved after this
+             * synchronization.
              */
-            Map<String, SyncedContact> syncedCoworkers = contactsManager
-                    .allFromGroup(groupCoworkers);
+            indexManager.clear();
+            index = SyncIndex.create(account.name, 0,
+                    syncedGroups.values(),
+                    Collections.<SyncedContact> emptyList());
+            index.markChanged();
+        }
 
-            Map<String, SyncedContact> createdCoworkers = syncCreatedContacts(
-                    account, groupCoworkers, loadedCoworkers, syncedCoworkers);
-            Map<String, SyncedContact> updatedCoworkers = syncUpdatedContacts(
-                    account, loadedCoworkers, syncedCoworkers);
-            syncRemovedContacts(account, loadedCoworkers, syncedCoworkers);
+        checkCanceled();
 
-            syncedCoworkers = new HashMap<String, SyncedContact>(
-                    syncedCoworkers);
-            syncedCoworkers.putAll(createdCoworkers);
-            syncedCoworkers.putAll(updatedCoworkers);
+        /*
+         * Synchronize groups, which contain loaded contacts.
+         */
+        stats.startPhase(Phase.GROUP);
+        try {
+            syncedGroups = syncGroups(account, checkpoint.getGroups(),
+                    syncedGroups, index, stats);
+        } catch (SyncOperationException exception) {
+            Log.e(TAG, "Could not sync groups.", exception);
+            stats.increment(Counter.FAILED);
+            return;
+        }
 
-            syncPhotos(account, syncedCoworkers);
+        checkCanceled();
+
+        /*
+         * Synchronize contacts.
+         */
+        stats.startPhase(Phase.CREATE);
+        Map<String, SyncedContact> createdContacts = syncCreatedContacts(
+                account, syncedGroups, checkpoint, index, stats);
+        stats.startPhase(Phase.UPDATE);
+        Map<String, SyncedContact> updatedContacts = syncUpdatedContacts(
+                account, syncedGroups, checkpoint, index, stats);
+        syncMovedContacts(account, syncedGroups, checkpoint, index, stats);
+        stats.startPhase(Phase.REMOVE);
+        syncRemovedContacts(account, checkpoint, index, stats);
+
+        /*
+         * Watermark is saved only if all changes were applied, otherwise the
+         * next synchronization should retry failed contacts.
+         */
+        checkpointManager.clear();
+        boolean completed = stats.get(Counter.FAILED) == 0;
+        checkpointManager.saveWatermark(account,
+                completed ? checkpoint.getWatermark() : null);
+
+        syncedContacts = new HashMap<String, SyncedContact>(syncedContacts);
+        syncedContacts.putAll(createdContacts);
+        syncedContacts.putAll(updatedContacts);
+
+        stats.startPhase(Phase.PHOTOS);
+        syncPhotos(account, syncedContacts, index, stats);
+
+        boolean scanned = index.getVerifiedAt() > 0;
+        if (scanned) {
+            saveIndex(index);
+        }
+    }
 
-            Log.d(TAG, "Sync finished.");
-        } catch (SyncCanceledException exception) {
-            Log.w(TAG, "Sync canceled.", exception);
+    /**
+     * Removes saved index before the first change of contacts provider, so
+     * index, that does not match provider, is never used.
+     */
+    private void beforeChanges(SyncIndex index) {
+        if (index.markChanged()) {
+            indexManager.clear();
+        }
+    }
+
+    /**
+     * Saves index, if contacts provider was changed or scanned.
+     */
+    private void saveIndex(SyncIndex index) {
+        if (index.wasChanged()) {
+            indexManager.save(index);
         }
     }
 
     /**
-     * Synchronizes group for contacts of coworkers.
+     * Finishes synchronization, if contacts were not changed since the
+     * previous synchronization. Only local settings and photos are
+     * synchronized.
+     */
+    private void syncUnchanged(Account account,
+            Map<String, SyncedGroup> syncedGroups,
+            Map<String, SyncedContact> syncedContacts, SyncIndex index,
+            SyncStats stats) throws SyncCanceledException {
+        List<Group> groups = new ArrayList<Group>(syncedGroups.size());
+        for (SyncedGroup syncedGroup : syncedGroups.values()) {
+            Group group = new Group();
+            group.setName(syncedGroup.getName());
+            group.setTitle(syncedGroup.getTitle());
+            groups.add(group);
+        }
+
+        stats.startPhase(Phase.GROUP);
+        try {
+            syncGroups(account, groups, syncedGroups, index, stats);
+        } catch (SyncOperationException exception) {
+            Log.e(TAG, "Could not sync groups.", exception);
+            stats.increment(Counter.FAILED);
+            return;
+        }
+
+        checkCanceled();
+
+        stats.startPhase(Phase.PHOTOS);
+        syncPhotos(account, syncedContacts, index, stats);
+    }
+
+    /**
+     * Fills result of synchronization using collected statistics.
+     */
+    private static void fillSyncResult(SyncStats stats, SyncResult syncResult) {
+        syncResult.stats.numEntries += stats.get(Counter.LOADED);
+        syncResult.stats.numInserts += stats.get(Counter.CREATED);
+        syncResult.stats.numUpdates += stats.get(Counter.UPDATED);
+        syncResult.stats.numDeletes += stats.get(Counter.REMOVED);
+        syncResult.stats.numSkippedEntries += stats.get(Counter.FAILED);
+    }
+
+    /**
+     * Synchronizes groups, that were loaded.
+     * 
+     * <p>
+     * Groups, that were not loaded, are kept as is.
      * 
      * @param account
      *            the account of user, who performs operation.
+     * @param loadedGroups
+     *            the loaded groups.
+     * @param syncedGroups
+     *            the synchronized groups by names.
+     * @param index
+     *            the local index, that is updated after each change.
      * 
-     * @return the synchronized group.
+     * @return the synchronized groups by names.
      * 
      * @throws SyncOperationException
      *             the group could not be synchronized.
      */
-    private SyncedGroup syncGroupForCoworkers(Account account)
-            throws SyncOperationException {
-        String name = getContext().getString(R.string.groupCoworkersName);
-        String title = settingsManager.getCoworkersTitle();
-
-        SyncedGroup group = groupsManager.findGroup(account, name);
-        if (group != null) {
-            if (!title.equals(group.getTitle())) {
-                return groupsManager.updateTitle(group, title);
+    private Map<String, SyncedGroup> syncGroups(Account account,
+            List<Group> loadedGroups, Map<String, SyncedGroup> syncedGroups,
+            SyncIndex index, SyncStats stats) throws SyncOperationException {
+        String coworkersName = getContext().getString(
+                R.string.groupCoworkersName);
+
+        Map<String, SyncedGroup> groups = new HashMap<String, SyncedGroup>(
+                syncedGroups);
+        for (Group loadedGroup : loadedGroups) {
+            String name = loadedGroup.getName();
+            String title = coworkersName.equals(name) ? settingsManager
+                    .getCoworkersTitle() : loadedGroup.getTitle();
+
+            SyncedGroup group = groups.get(name);
+            if (group == null) {
+                beforeChanges(index);
+                stats.increment(Counter.BATCHES);
+                groups.put(name,
+                        groupsManager.createGroup(account, name, title));
+                index.setGroups(groups.values());
+            } else if (!title.equals(group.getTitle())) {
+                beforeChanges(index);
+                stats.increment(Counter.BATCHES);
+                groups.put(name, groupsManager.updateTitle(group, title));
+                index.setGroups(groups.values());
             }
+        }
 
-            return group;
+        return groups;
+    }
+
+    /**
+     * Loads watermark of contacts, that should be synchronized.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * 
+     * @return the loaded watermark or <code>null</code> if watermark could
+     *         not be loaded.
+     */
+    private String loadWatermark(Account account)
+            throws NotAuthorizedException {
+        String username = account.name;
+        AccountManager accountManager = AccountManager.get(getContext());
+        String password = accountManager.getPassword(account);
+
+        try {
+            return restClient.getChanges(username, password,
+                    checkpointManager.loadWatermark(account)).getWatermark();
+        } catch (NotAvailableException exception) {
+            Log.w(TAG, "Could not get changes.", exception);
+            return null;
         }
+    }
+
+    /**
+     * Loads groups of user with their contacts.
+     * 
+     * @param account
+     *            the account of user, who performs operation.
+     * @param syncedContacts
+     *            the synchronized contacts.
+     * 
+     * @return the difference between loaded and synchronized contacts.
+     */
+    private ContactsDiff loadGroups(Account account,
+            Map<String, SyncedContact> syncedContacts)
+            throws NotAuthorizedException, NotAvailableException {
+        String username = account.name;
+        AccountManager accountManager = AccountManager.get(getContext());
+        String password = accountManager.getPassword(account);
 
-        return groupsManager.createGroup(account, name, title);
+        ContactsDiff diff = new ContactsDiff(syncedContacts);
+        restClient.getGroups(username, password, diff);
+        Log.d(TAG,
+                format("Loaded {0} groups with {1} contacts.", diff.getGroups()
+                        .size(), diff.getLoadedNum()));
+        return diff;
     }
 
     /**
-     * Loads contacts of coworkers.
+     * Loads groups of user with contacts, that differ from synchronized
+     * contacts.
+     * 
+     * <p>
+     * If service does not support reconciliation, then all contacts are
+     * loaded.
      * 
      * @param account
      *            the account of user, who performs operation.
+     * @param syncedContacts
+     *            the synchronized contacts.
      * 
-     * @return the contacts of coworkers.
+     * @return the difference between loaded and synchronized contacts.
      */
-    private Map<String, Contact> loadContactsOfCoworkers(Account account)
+    private ContactsDiff reconcileGroups(Account account,
+            Map<String, SyncedContact> syncedContacts)
             throws NotAuthorizedException, NotAvailableException {
         String username = account.name;
         AccountManager accountManager = AccountManager.get(getContext());
         String password = accountManager.getPassword(account);
 
-        Contact[] contacts = restClient.getCoworkers(username, password);
-        Map<String, Contact> loadedContacts = new HashMap<String, Contact>();
-        for (Contact contact : contacts) {
-            loadedContacts.put(contact.getUsername(), contact);
+        ContactsReconciliation reconciliation = new ContactsReconciliation(
+                syncedContacts);
+        try {
+            restClient.reconcile(username, password,
+                    reconciliation.getSummary(), reconciliation);
+        } catch (NotFoundException exception) {
+            Log.w(TAG, "Service does not support reconciliation.", exception);
+            return loadGroups(account, syncedContacts);
         }
-        Log.d(TAG,
-                format("Loaded {0} contacts of coworkers.",
-                        loadedContacts.size()));
-        return loadedContacts;
+
+        ContactsDiff diff = reconciliation.getDiff();
+        Log.d(TAG, format("Loaded {0} changed contacts.", diff.getLoadedNum()));
+        return diff;
+    }
+
+    /**
+     * Returns the groups, that should contain contact, or <code>null</code>
+     * if groups of contact are not changed.
+     */
+    private static Collection<SyncedGroup> groupsOf(String username,
+            Map<String, SyncedGroup> syncedGroups, SyncCheckpoint checkpoint) {
+        Set<String> names = checkpoint.getMemberships().get(username);
+        if (names == null) {
+            return null;
+        }
+
+        List<SyncedGroup> groups = new ArrayList<SyncedGroup>(names.size());
+        for (String name : names) {
+            SyncedGroup group = syncedGroups.get(name);
+            if (group != null) {
+                groups.add(group);
+            }
+        }
+        return groups;
     }
 
     /**
      * Creates new contacts.
      */
     private Map<String, SyncedContact> syncCreatedContacts(Account account,
-            SyncedGroup group, Map<String, Contact> loadedContacts,
-            Map<String, SyncedContact> syncedContacts)
-            throws SyncCanceledException {
+            Map<String, SyncedGroup> syncedGroups, SyncCheckpoint checkpoint,
+            SyncIndex index, SyncStats stats) throws SyncCanceledException {
         Map<String, SyncedContact> createdContacts = new HashMap<String, SyncedContact>();
 
-        for (Contact loadedContact : loadedContacts.values()) {
+        for (Contact loadedContact : checkpoint.getCreatedContacts()) {
             String username = loadedContact.getUsername();
-            if (syncedContacts.containsKey(username)) {
+            if (checkpoint.isApplied(username)) {
                 continue;
             }
 
             checkCanceled();
 
             try {
+                stats.increment(Counter.BATCHES);
                 SyncedContact createdContact = contactsManager.createContact(
-                        account, group, loadedContact);
+                        account, groupsOf(username, syncedGroups, checkpoint),
+                        loadedContact);
                 createdContacts.put(createdContact.getUsername(),
                         createdContact);
+                index.putContact(createdContact);
+                stats.increment(Counter.CREATED);
+                checkpointManager.markApplied(checkpoint, username);
             } catch (SyncOperationException exception) {
                 Log.w(TAG,
                         format("Contact for {0} was not created.", username),
                         exception);
+                stats.increment(Counter.FAILED);
             }
         }
 
@@ -203,38 +499,50 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
     }
 
     /**
-     * Updates existing contacts, if their version differ from synchronized
+     * Updates existing contacts, if their data differ from synchronized
      * contacts.
      */
     private Map<String, SyncedContact> syncUpdatedContacts(Account account,
-            Map<String, Contact> loadedContacts,
-            Map<String, SyncedContact> syncedContacts)
-            throws SyncCanceledException {
+            Map<String, SyncedGroup> syncedGroups, SyncCheckpoint checkpoint,
+            SyncIndex index, SyncStats stats) throws SyncCanceledException {
         Map<String, SyncedContact> updatedContacts = new HashMap<String, SyncedContact>();
 
-        for (Contact loadedContact : loadedContacts.values()) {
+        Map<String, SyncedContact> changedContacts = new HashMap<String, SyncedContact>();
+        for (Contact loadedContact : checkpoint.getUpdatedContacts()) {
             String username = loadedContact.getUsername();
-            if (!syncedContacts.containsKey(username)) {
+            if (checkpoint.isApplied(username)) {
                 continue;
             }
-            SyncedContact syncedContact = syncedContacts.get(username);
-
-            checkCanceled();
+            changedContacts.put(username, checkpoint.toSyncedContact(username));
+        }
+        Map<Long, Contact> syncedData = contactsManager
+                .findData(changedContacts.values());
 
-            if (loadedContact.getVersion().equals(syncedContact.getVersion())) {
-                Log.d(TAG, format("Contact for {0} is up to date.", username));
+        for (Contact loadedContact : checkpoint.getUpdatedContacts()) {
+            String username = loadedContact.getUsername();
+            SyncedContact syncedContact = changedContacts.get(username);
+            if (syncedContact == null) {
                 continue;
             }
 
+            checkCanceled();
+
             try {
+                stats.increment(Counter.BATCHES);
                 SyncedContact updatedContact = contactsManager.updateContact(
-                        account, syncedContact, loadedContact);
+                        account, syncedContact,
+                        syncedData.get(syncedContact.getId()), loadedContact,
+                        groupsOf(username, syncedGroups, checkpoint));
                 updatedContacts.put(updatedContact.getUsername(),
                         updatedContact);
+                index.putContact(updatedContact);
+                stats.increment(Counter.UPDATED);
+                checkpointManager.markApplied(checkpoint, username);
             } catch (SyncOperationException exception) {
                 Log.w(TAG,
                         format("Contact for {0} was not updated.", username),
                         exception);
+                stats.increment(Counter.FAILED);
             }
         }
 
@@ -242,27 +550,61 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
         return updatedContacts;
     }
 
+    /**
+     * Moves contacts, that are up to date, to other groups.
+     */
+    private void syncMovedContacts(Account account,
+            Map<String, SyncedGroup> syncedGroups, SyncCheckpoint checkpoint,
+            SyncIndex index, SyncStats stats) throws SyncCanceledException {
+        for (String username : checkpoint.getMovedUsernames()) {
+            if (checkpoint.isApplied(username)) {
+                continue;
+            }
+
+            checkCanceled();
+
+            try {
+                stats.increment(Counter.BATCHES);
+                SyncedContact movedContact = checkpoint
+                        .toSyncedContact(username);
+                contactsManager.updateGroups(account, movedContact,
+                        groupsOf(username, syncedGroups, checkpoint));
+                index.moveContact(username, movedContact.getGroups());
+                stats.increment(Counter.MOVED);
+                checkpointManager.markApplied(checkpoint, username);
+            } catch (SyncOperationException exception) {
+                Log.w(TAG, format("Contact for {0} was not moved.", username),
+                        exception);
+                stats.increment(Counter.FAILED);
+            }
+        }
+    }
+
     /**
      * Removes obsolete contacts.
      */
     private void syncRemovedContacts(Account account,
-            Map<String, Contact> loadedContacts,
-            Map<String, SyncedContact> syncedContacts)
+            SyncCheckpoint checkpoint, SyncIndex index, SyncStats stats)
             throws SyncCanceledException {
-        for (SyncedContact syncedContact : syncedContacts.values()) {
-            String username = syncedContact.getUsername();
-            if (loadedContacts.containsKey(username)) {
+        for (String username : checkpoint.getRemovedUsernames()) {
+            if (checkpoint.isApplied(username)) {
                 continue;
             }
 
             checkCanceled();
 
             try {
-                contactsManager.removeContact(account, syncedContact);
+                stats.increment(Counter.BATCHES);
+                contactsManager.removeContact(account,
+                        checkpoint.toSyncedContact(username));
+                index.removeContact(username);
+                stats.increment(Counter.REMOVED);
+                checkpointManager.markApplied(checkpoint, username);
             } catch (SyncOperationException exception) {
                 Log.w(TAG,
                         format("Contact for {0} was not removed.", username),
                         exception);
+                stats.increment(Counter.FAILED);
             }
         }
     }
@@ -271,8 +613,8 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
      * Synchronizes photos.
      */
     private void syncPhotos(Account account,
-            Map<String, SyncedContact> syncedContacts)
-            throws SyncCanceledException {
+            Map<String, SyncedContact> syncedContacts, SyncIndex index,
+            SyncStats stats) throws SyncCanceledException {
         if (!settingsManager.isSyncPhotos()) {
             Log.d(TAG, "Sync of photos is disabled.");
             return;
@@ -286,11 +628,16 @@ public class SyncContactsAdapter extends AbstractThreadedSyncAdapter {
             checkCanceled();
 
             try {
+                beforeChanges(index);
                 syncPhoto(account, syncedContact);
+                index.photoSynced(syncedContact.getUsername());
+                stats.increment(Counter.BATCHES);
+                stats.increment(Counter.PHOTOS);
             } catch (SyncOperationException exception) {
                 Log.w(TAG,
                         format("Photo for {0} was not updated.",
                                 syncedContact.getUsername()), exception);
+                stats.increment(Counter.FAILED);
             }
         }
     }
@@ -0,0 +1,173 @@
+package grytsenko.contacts.app.service.sync;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Local copy of synchronized groups and contacts of account.
+ * 
+ * <p>
+ * Index is updated after each successful operation with contacts provider,
+ * so synchronization can compare contacts without scanning provider.
+ */
+public class SyncIndex {
+
+    /**
+     * Creates index for the given groups and contacts, that were just read
+     * from contacts provider.
+     */
+    public static SyncIndex create(String accountName, long verifiedAt,
+            Collection<SyncedGroup> groups, Collection<SyncedContact> contacts) {
+        SyncIndex index = new SyncIndex();
+
+        index.accountName = accountName;
+        index.verifiedAt = verifiedAt;
+        index.setGroups(groups);
+        index.setContacts(contacts);
+
+        return index;
+    }
+
+    private String accountName;
+    private long verifiedAt;
+
+    private Map<String, SyncedGroup> groups = new HashMap<String, SyncedGroup>();
+    private Map<String, SyncedContact> contacts = new HashMap<String, SyncedContact>();
+
+    private boolean changed;
+
+    public SyncIndex() {
+    }
+
+    /**
+     * Returns the name of account, that is synchronized.
+     */
+    public String getAccountName() {
+        return accountName;
+    }
+
+    /**
+     * Sets the name of account, that is synchronized.
+     */
+    public void setAccountName(String accountName) {
+        this.accountName = accountName;
+    }
+
+    /**
+     * Returns the time, when index was compared with contacts provider.
+     */
+    public long getVerifiedAt() {
+        return verifiedAt;
+    }
+
+    /**
+     * Sets the time, when index was compared with contacts provider.
+     */
+    public void setVerifiedAt(long verifiedAt) {
+        this.verifiedAt = verifiedAt;
+    }
+
+    /**
+     * Returns the synchronized groups.
+     */
+    public Collection<SyncedGroup> getGroups() {
+        return groups.values();
+    }
+
+    /**
+     * Sets the synchronized groups.
+     */
+    public void setGroups(Collection<SyncedGroup> groups) {
+        this.groups = new HashMap<String, SyncedGroup>();
+        for (SyncedGroup group : groups) {
+            this.groups.put(group.getName(), group);
+        }
+    }
+
+    /**
+     * Returns the synchronized contacts.
+     */
+    public Collection<SyncedContact> getContacts() {
+        return contacts.values();
+    }
+
+    /**
+     * Sets the synchronized contacts.
+     */
+    public void setContacts(Collection<SyncedContact> contacts) {
+        this.contacts = new HashMap<String, SyncedContact>();
+        for (SyncedContact contact : contacts) {
+            this.contacts.put(contact.getUsername(), contact);
+        }
+    }
+
+    /**
+     * Returns copy of synchronized groups by names.
+     */
+    public Map<String, SyncedGroup> groupsByName() {
+        return new HashMap<String, SyncedGroup>(groups);
+    }
+
+    /**
+     * Returns copy of synchronized contacts by usernames.
+     */
+    public Map<String, SyncedContact> contactsByUsername() {
+        return new HashMap<String, SyncedContact>(contacts);
+    }
+
+    /**
+     * Saves created or updated contact.
+     */
+    public void putContact(SyncedContact contact) {
+        contacts.put(contact.getUsername(), contact);
+    }
+
+    /**
+     * Saves new groups of contact.
+     */
+    public void moveContact(String username, Set<String> groupNames) {
+        SyncedContact contact = contacts.get(username);
+        if (contact != null) {
+            contact.setGroups(new HashSet<String>(groupNames));
+        }
+    }
+
+    /**
+     * Forgets removed contact.
+     */
+    public void removeContact(String username) {
+        contacts.remove(username);
+    }
+
+    /**
+     * Saves that photo of contact was synchronized.
+     */
+    public void photoSynced(String username) {
+        SyncedContact contact = contacts.get(username);
+        if (contact != null) {
+            contact.setUnsyncedPhotoUrl(null);
+        }
+    }
+
+    /**
+     * Marks that contacts provider is going to be changed.
+     * 
+     * @return <code>true</code> if index was not changed before.
+     */
+    public boolean markChanged() {
+        boolean first = !changed;
+        changed = true;
+        return first;
+    }
+
+    /**
+     * Checks that contacts provider was changed after index was loaded.
+     */
+    public boolean wasChanged() {
+        return changed;
+    }
+
+}
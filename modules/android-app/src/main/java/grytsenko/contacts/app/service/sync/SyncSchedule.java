@@ -0,0 +1,134 @@
+package grytsenko.contacts.app.service.sync;
+
+import java.util.Random;
+
+/**
+ * Policy of periodic synchronization.
+ * 
+ * <p>
+ * Schedule tracks the rate of changes of contacts and chooses interval,
+ * during which one change is expected. So contacts from small offices,
+ * which are rarely changed, are synchronized rarely, and contacts from large
+ * offices are synchronized often. Interval is shifted randomly, so devices,
+ * that were synchronized at the same time, do not access service together
+ * again.
+ * 
+ * <p>
+ * Schedule does not depend on Android, so it can be used in any JVM.
+ */
+public class SyncSchedule {
+
+    static final long HOUR = 60L * 60L * 1000L;
+
+    /**
+     * The shortest interval between synchronizations.
+     */
+    static final long MIN_INTERVAL = HOUR / 2;
+
+    /**
+     * The longest interval between synchronizations.
+     */
+    static final long MAX_INTERVAL = 24L * HOUR;
+
+    /**
+     * The interval, until rate of changes is known.
+     */
+    static final long DEFAULT_INTERVAL = 4L * HOUR;
+
+    /**
+     * The weight of the last synchronization in rate of changes.
+     */
+    static final double WEIGHT = 0.3;
+
+    /**
+     * The maximum shift of interval, in parts of interval.
+     */
+    static final double JITTER = 0.2;
+
+    private final Random random;
+
+    private double rate = -1;
+    private long syncedAt;
+
+    /**
+     * Creates schedule, for which nothing is known yet.
+     * 
+     * @param random
+     *            the source of random shifts.
+     */
+    public SyncSchedule(Random random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random not defined.");
+        }
+
+        this.random = random;
+    }
+
+    /**
+     * Restores the state of schedule.
+     * 
+     * @param rate
+     *            the rate of changes per hour or a negative number if rate
+     *            is not known.
+     * @param syncedAt
+     *            the time of the last successful synchronization or 0.
+     */
+    public void restore(double rate, long syncedAt) {
+        this.rate = rate;
+        this.syncedAt = syncedAt;
+    }
+
+    /**
+     * Takes into account result of successful synchronization.
+     * 
+     * @param finishedAt
+     *            the time, when synchronization was finished.
+     * @param changes
+     *            the number of changed contacts.
+     */
+    public void addResult(long finishedAt, long changes) {
+        if (syncedAt > 0 && finishedAt > syncedAt) {
+            double hours = (double) (finishedAt - syncedAt) / HOUR;
+            double observedRate = changes / hours;
+            rate = rate < 0 ? observedRate : WEIGHT * observedRate
+                    + (1 - WEIGHT) * rate;
+        }
+
+        syncedAt = finishedAt;
+    }
+
+    /**
+     * Returns the rate of changes per hour or a negative number if rate is
+     * not known.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the time of the last successful synchronization.
+     */
+    public long getSyncedAt() {
+        return syncedAt;
+    }
+
+    /**
+     * Chooses interval before the next synchronization.
+     * 
+     * @return the interval in milliseconds.
+     */
+    public long nextInterval() {
+        long interval;
+        if (rate < 0) {
+            interval = DEFAULT_INTERVAL;
+        } else if (rate * MAX_INTERVAL / HOUR <= 1) {
+            interval = MAX_INTERVAL;
+        } else {
+            interval = Math.max(MIN_INTERVAL, (long) (HOUR / rate));
+        }
+
+        double shift = JITTER * (2 * random.nextDouble() - 1);
+        return (long) (interval * (1 + shift));
+    }
+
+}
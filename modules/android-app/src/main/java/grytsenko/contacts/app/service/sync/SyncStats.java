@@ -0,0 +1,191 @@
+package grytsenko.contacts.app.service.sync;
+
+import java.util.Locale;
+
+/**
+ * Statistics of one synchronization.
+ * 
+ * <p>
+ * Collects durations of phases and values of counters.
+ */
+public class SyncStats {
+
+    /**
+     * Phases of synchronization.
+     */
+    public enum Phase {
+        GROUP, LOCAL_SCAN, LOAD, CREATE, UPDATE, REMOVE, PHOTOS
+    }
+
+    /**
+     * Counters of synchronization.
+     */
+    public enum Counter {
+        LOADED, CREATED, UPDATED, MOVED, REMOVED, PHOTOS, FAILED, BATCHES,
+        RECEIVED_BYTES, DECODED_BYTES
+    }
+
+    private long startedAt;
+    private long finishedAt;
+
+    private final long[] durations;
+    private final long[] counters;
+
+    private Phase currentPhase;
+    private long phaseStartedAt;
+
+    private boolean canceled;
+
+    /**
+     * Creates statistics for synchronization, that is started now.
+     */
+    public SyncStats() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Creates statistics for synchronization, that was started at the given
+     * time.
+     */
+    public SyncStats(long startedAt) {
+        this.startedAt = startedAt;
+
+        durations = new long[Phase.values().length];
+        counters = new long[Counter.values().length];
+    }
+
+    /**
+     * Starts the next phase. The current phase, if any, is finished.
+     */
+    public void startPhase(Phase phase) {
+        finishPhase();
+
+        currentPhase = phase;
+        phaseStartedAt = System.nanoTime();
+    }
+
+    /**
+     * Finishes the current phase.
+     */
+    public void finishPhase() {
+        if (currentPhase == null) {
+            return;
+        }
+
+        long duration = (System.nanoTime() - phaseStartedAt) / 1000000L;
+        durations[currentPhase.ordinal()] += duration;
+        currentPhase = null;
+    }
+
+    /**
+     * Finishes synchronization.
+     */
+    public void finish() {
+        finishPhase();
+
+        finishedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Increments value of counter.
+     */
+    public void increment(Counter counter) {
+        add(counter, 1);
+    }
+
+    /**
+     * Adds the given value to counter.
+     */
+    public void add(Counter counter, long value) {
+        counters[counter.ordinal()] += value;
+    }
+
+    /**
+     * Returns the value of counter.
+     */
+    public long get(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    /**
+     * Sets the value of counter.
+     */
+    public void set(Counter counter, long value) {
+        counters[counter.ordinal()] = value;
+    }
+
+    /**
+     * Returns the duration of phase in milliseconds.
+     */
+    public long getDuration(Phase phase) {
+        return durations[phase.ordinal()];
+    }
+
+    /**
+     * Sets the duration of phase in milliseconds.
+     */
+    public void setDuration(Phase phase, long duration) {
+        durations[phase.ordinal()] = duration;
+    }
+
+    /**
+     * Returns the time, when synchronization was started.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Returns the time, when synchronization was finished.
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * Sets the time, when synchronization was finished.
+     */
+    public void setFinishedAt(long finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    /**
+     * Returns the total duration of synchronization in milliseconds.
+     */
+    public long getTotalDuration() {
+        return finishedAt - startedAt;
+    }
+
+    /**
+     * Checks that synchronization was canceled.
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Marks that synchronization was canceled.
+     */
+    public void setCanceled(boolean canceled) {
+        this.canceled = canceled;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("total=").append(getTotalDuration()).append("ms");
+        for (Phase phase : Phase.values()) {
+            builder.append(' ').append(phase.name().toLowerCase(Locale.US))
+                    .append('=').append(getDuration(phase)).append("ms");
+        }
+        for (Counter counter : Counter.values()) {
+            builder.append(' ').append(counter.name().toLowerCase(Locale.US))
+                    .append('=').append(get(counter));
+        }
+        if (canceled) {
+            builder.append(" canceled");
+        }
+        return builder.toString();
+    }
+
+}
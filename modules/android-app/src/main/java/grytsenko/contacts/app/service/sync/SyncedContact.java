@@ -2,6 +2,9 @@ package grytsenko.contacts.app.service.sync;
 
 import grytsenko.contacts.common.util.StringUtils;
 
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Information about contact, that is synchronized.
  */
@@ -11,12 +14,12 @@ public class SyncedContact {
      * Creates a contact with given properties.
      */
     public static SyncedContact create(long id, String username,
-            String version, String unsyncedPhotoUrl) {
+            String hash, String unsyncedPhotoUrl) {
         SyncedContact contact = new SyncedContact();
 
         contact.id = id;
         contact.username = username;
-        contact.version = version;
+        contact.hash = hash;
         contact.unsyncedPhotoUrl = unsyncedPhotoUrl;
 
         return contact;
@@ -24,9 +27,11 @@ public class SyncedContact {
 
     private long id;
     private String username;
-    private String version;
+    private String hash;
     private String unsyncedPhotoUrl;
 
+    private Set<String> groups = new HashSet<String>();
+
     public SyncedContact() {
     }
 
@@ -59,17 +64,17 @@ public class SyncedContact {
     }
 
     /**
-     * Returns the current version.
+     * Returns the hash of synchronized data.
      */
-    public String getVersion() {
-        return version;
+    public String getHash() {
+        return hash;
     }
 
     /**
-     * Sets the current version.
+     * Sets the hash of synchronized data.
      */
-    public void setVersion(String version) {
-        this.version = version;
+    public void setHash(String hash) {
+        this.hash = hash;
     }
 
     /**
@@ -87,6 +92,20 @@ public class SyncedContact {
         this.unsyncedPhotoUrl = unsyncedPhotoUrl;
     }
 
+    /**
+     * Returns the names of groups, that contain contact.
+     */
+    public Set<String> getGroups() {
+        return groups;
+    }
+
+    /**
+     * Sets the names of groups, that contain contact.
+     */
+    public void setGroups(Set<String> groups) {
+        this.groups = groups;
+    }
+
     /**
      * Checks that photo for contact synchronized.
      * 
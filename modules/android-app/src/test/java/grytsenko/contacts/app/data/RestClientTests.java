@@ -0,0 +1,135 @@
+package grytsenko.contacts.app.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import grytsenko.contacts.common.model.Contact;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.ContentCodingType;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.web.client.HttpMessageConverterExtractor;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.RestTemplate;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Checks HTTP stack of {@link RestClient} against local stub of service.
+ */
+public class RestClientTests {
+
+    private static final int REQUESTS = 10;
+
+    private HttpServer server;
+    private URI url;
+
+    private final Set<Integer> clientPorts = Collections
+            .synchronizedSet(new HashSet<Integer>());
+
+    private AtomicLong receivedBytes;
+    private AtomicLong decodedBytes;
+    private RestTemplate template;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/contacts/my.json", new StubHandler());
+        server.start();
+        url = new URI("http://localhost:" + server.getAddress().getPort()
+                + "/contacts/my.json");
+
+        receivedBytes = new AtomicLong();
+        decodedBytes = new AtomicLong();
+        template = RestClient.createTemplate(1000, 5000, 30000, 4,
+                receivedBytes, decodedBytes, new ObjectMapper(),
+                new ObjectMapper(new SmileFactory()));
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void connectionIsReused() {
+        for (int i = 0; i < REQUESTS; ++i) {
+            assertEquals("ivanov", get().getUsername());
+        }
+
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void responseIsDecompressed() {
+        Contact contact = get();
+
+        assertEquals("Ivan", contact.getFirstName());
+        assertTrue(receivedBytes.get() > 0);
+        assertTrue(receivedBytes.get() < decodedBytes.get());
+    }
+
+    private Contact get() {
+        return template.execute(url, HttpMethod.GET, new RequestCallback() {
+            @Override
+            public void doWithRequest(ClientHttpRequest request) {
+                request.getHeaders().setAccept(
+                        Arrays.asList(MediaType.APPLICATION_JSON));
+                request.getHeaders().setAcceptEncoding(ContentCodingType.GZIP);
+            }
+        }, new HttpMessageConverterExtractor<Contact>(Contact.class,
+                template.getMessageConverters()));
+    }
+
+    /**
+     * Returns the same contact compressed by gzip and remembers ports of
+     * clients.
+     */
+    private class StubHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+
+            Contact contact = new Contact();
+            contact.setUsername("ivanov");
+            contact.setFirstName("Ivan");
+            contact.setLastName("Ivanov");
+            contact.setMail("ivanov@test.com");
+            contact.setLocation("Kyiv/Podil");
+
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            OutputStream gzip = new GZIPOutputStream(body);
+            new ObjectMapper().writeValue(gzip, contact);
+            gzip.close();
+
+            exchange.getResponseHeaders().set("Content-Type",
+                    "application/json");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, body.size());
+            exchange.getResponseBody().write(body.toByteArray());
+            exchange.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,105 @@
+package grytsenko.contacts.app.service.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that {@link SyncIndex} follows operations with contacts provider.
+ */
+public class SyncIndexTests {
+
+    private SyncIndex index;
+
+    @Before
+    public void setUp() {
+        SyncedContact jdoe = SyncedContact.create(1, "jdoe", "a",
+                "http://example.com/jdoe.png");
+        jdoe.setGroups(new HashSet<String>(Arrays.asList("coworkers")));
+        SyncedContact asmith = SyncedContact.create(2, "asmith", "b", null);
+
+        index = SyncIndex.create("jdoe", 1000L,
+                Arrays.asList(SyncedGroup.create(1, "coworkers", "Coworkers")),
+                Arrays.asList(jdoe, asmith));
+    }
+
+    @Test
+    public void contactsAreFoundByUsernames() {
+        assertEquals("jdoe", index.getAccountName());
+        assertEquals(1000L, index.getVerifiedAt());
+        assertEquals("Coworkers", index.groupsByName().get("coworkers")
+                .getTitle());
+        assertEquals(2, index.contactsByUsername().size());
+        assertEquals("b", index.contactsByUsername().get("asmith").getHash());
+    }
+
+    /**
+     * Created, updated, moved and removed contacts are saved to index.
+     */
+    @Test
+    public void operationsAreSaved() {
+        index.putContact(SyncedContact.create(3, "bjones", "c", null));
+        index.putContact(SyncedContact.create(2, "asmith", "d", null));
+
+        Set<String> groups = new HashSet<String>(Arrays.asList("coworkers",
+                "favorites"));
+        index.moveContact("jdoe", groups);
+        groups.clear();
+
+        index.removeContact("bjones");
+        index.moveContact("bjones", Collections.singleton("coworkers"));
+
+        Map<String, SyncedContact> contacts = index.contactsByUsername();
+        assertEquals(2, contacts.size());
+        assertNull(contacts.get("bjones"));
+        assertEquals("d", contacts.get("asmith").getHash());
+        assertEquals(new HashSet<String>(Arrays.asList("coworkers",
+                "favorites")), contacts.get("jdoe").getGroups());
+    }
+
+    @Test
+    public void photoIsSynced() {
+        assertFalse(index.contactsByUsername().get("jdoe").isPhotoSynced());
+
+        index.photoSynced("jdoe");
+        index.photoSynced("unknown");
+
+        assertTrue(index.contactsByUsername().get("jdoe").isPhotoSynced());
+    }
+
+    /**
+     * Only the first change is reported, so provider is marked as changed
+     * once per synchronization.
+     */
+    @Test
+    public void firstChangeIsReported() {
+        assertFalse(index.wasChanged());
+        assertTrue(index.markChanged());
+        assertFalse(index.markChanged());
+        assertTrue(index.wasChanged());
+    }
+
+    /**
+     * Copies of maps can be changed by synchronization without changing
+     * index.
+     */
+    @Test
+    public void mapsAreCopied() {
+        index.contactsByUsername().remove("jdoe");
+        index.groupsByName().clear();
+
+        assertEquals(2, index.getContacts().size());
+        assertEquals(1, index.getGroups().size());
+    }
+
+}
@@ -0,0 +1,132 @@
+package grytsenko.contacts.app.service.sync;
+
+import static grytsenko.contacts.app.service.sync.SyncSchedule.DEFAULT_INTERVAL;
+import static grytsenko.contacts.app.service.sync.SyncSchedule.HOUR;
+import static grytsenko.contacts.app.service.sync.SyncSchedule.JITTER;
+import static grytsenko.contacts.app.service.sync.SyncSchedule.MAX_INTERVAL;
+import static grytsenko.contacts.app.service.sync.SyncSchedule.MIN_INTERVAL;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link SyncSchedule} chooses intervals between synchronizations.
+ */
+public class SyncScheduleTests {
+
+    private static final double DELTA = 1e-9;
+
+    private static final long NOW = 1000L * HOUR;
+
+    @Test
+    public void defaultIntervalIsUsedUntilRateIsKnown() {
+        SyncSchedule schedule = new SyncSchedule(new NoJitter());
+        assertEquals(DEFAULT_INTERVAL, schedule.nextInterval());
+
+        schedule.addResult(NOW, 10);
+        assertTrue(schedule.getRate() < 0);
+        assertEquals(NOW, schedule.getSyncedAt());
+        assertEquals(DEFAULT_INTERVAL, schedule.nextInterval());
+    }
+
+    @Test
+    public void intervalIsInverseOfRate() {
+        SyncSchedule schedule = new SyncSchedule(new NoJitter());
+        schedule.restore(0.5, NOW);
+        assertEquals(2 * HOUR, schedule.nextInterval());
+    }
+
+    @Test
+    public void intervalIsClamped() {
+        SyncSchedule schedule = new SyncSchedule(new NoJitter());
+
+        schedule.restore(100, NOW);
+        assertEquals(MIN_INTERVAL, schedule.nextInterval());
+
+        schedule.restore(0.01, NOW);
+        assertEquals(MAX_INTERVAL, schedule.nextInterval());
+
+        schedule.restore(0, NOW);
+        assertEquals(MAX_INTERVAL, schedule.nextInterval());
+    }
+
+    /**
+     * The first observed rate is taken as is, next rates are averaged.
+     */
+    @Test
+    public void rateIsAveraged() {
+        SyncSchedule schedule = new SyncSchedule(new NoJitter());
+
+        schedule.addResult(NOW, 0);
+        schedule.addResult(NOW + 2 * HOUR, 4);
+        assertEquals(2.0, schedule.getRate(), DELTA);
+
+        schedule.addResult(NOW + 3 * HOUR, 0);
+        assertEquals((1 - SyncSchedule.WEIGHT) * 2.0, schedule.getRate(),
+                DELTA);
+
+        schedule.addResult(NOW + 4 * HOUR, 10);
+        assertEquals(SyncSchedule.WEIGHT * 10 + (1 - SyncSchedule.WEIGHT)
+                * (1 - SyncSchedule.WEIGHT) * 2.0, schedule.getRate(), DELTA);
+        assertEquals(NOW + 4 * HOUR, schedule.getSyncedAt());
+    }
+
+    /**
+     * Results, that are not later than the last synchronization, do not
+     * change rate.
+     */
+    @Test
+    public void resultsBeforeLastSyncAreIgnored() {
+        SyncSchedule schedule = new SyncSchedule(new NoJitter());
+        schedule.restore(1.0, NOW);
+
+        schedule.addResult(NOW, 100);
+        assertEquals(1.0, schedule.getRate(), DELTA);
+
+        schedule.addResult(NOW - HOUR, 100);
+        assertEquals(1.0, schedule.getRate(), DELTA);
+    }
+
+    @Test
+    public void jitterIsBounded() {
+        SyncSchedule schedule = new SyncSchedule(new Random(42));
+        schedule.restore(0.5, NOW);
+
+        long interval = 2 * HOUR;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        for (int i = 0; i < 1000; ++i) {
+            long next = schedule.nextInterval();
+            min = Math.min(min, next);
+            max = Math.max(max, next);
+        }
+
+        assertTrue(min >= (long) (interval * (1 - JITTER)));
+        assertTrue(max <= (long) (interval * (1 + JITTER)));
+        assertTrue(min < (long) (interval * (1 - JITTER / 2)));
+        assertTrue(max > (long) (interval * (1 + JITTER / 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void randomIsRequired() {
+        new SyncSchedule(null);
+    }
+
+    /**
+     * Always returns the middle of range, so intervals are not shifted.
+     */
+    private static class NoJitter extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double nextDouble() {
+            return 0.5;
+        }
+
+    }
+
+}
@@ -0,0 +1,106 @@
+package grytsenko.contacts.app.service.sync;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import grytsenko.contacts.app.service.sync.SyncStats.Counter;
+import grytsenko.contacts.app.service.sync.SyncStats.Phase;
+
+import java.util.Locale;
+
+import org.junit.Test;
+
+/**
+ * Checks how {@link SyncStats} collects durations of phases and counters.
+ */
+public class SyncStatsTests {
+
+    private static final long PAUSE = 20L;
+
+    /**
+     * Durations of repeated phase are summed up, and time between phases is
+     * not counted.
+     */
+    @Test
+    public void durationsOfPhaseAreAccumulated() throws Exception {
+        SyncStats stats = new SyncStats();
+
+        stats.startPhase(Phase.LOAD);
+        Thread.sleep(PAUSE);
+        stats.startPhase(Phase.CREATE);
+        Thread.sleep(PAUSE);
+        stats.finishPhase();
+
+        long load = stats.getDuration(Phase.LOAD);
+        long create = stats.getDuration(Phase.CREATE);
+        assertTrue(load >= PAUSE);
+        assertTrue(create >= PAUSE);
+
+        Thread.sleep(PAUSE);
+        stats.startPhase(Phase.LOAD);
+        Thread.sleep(PAUSE);
+        stats.finish();
+
+        assertTrue(stats.getDuration(Phase.LOAD) >= load + PAUSE);
+        assertTrue(stats.getDuration(Phase.LOAD) < load + 2 * PAUSE + 50L);
+        assertEquals(create, stats.getDuration(Phase.CREATE));
+        assertEquals(0, stats.getDuration(Phase.GROUP));
+        assertTrue(stats.getTotalDuration() >= 4 * PAUSE);
+    }
+
+    /**
+     * Phase can be finished several times, only the first time counts.
+     */
+    @Test
+    public void finishPhaseIsIdempotent() throws Exception {
+        SyncStats stats = new SyncStats();
+
+        stats.startPhase(Phase.PHOTOS);
+        stats.finishPhase();
+        long duration = stats.getDuration(Phase.PHOTOS);
+
+        Thread.sleep(PAUSE);
+        stats.finishPhase();
+        stats.finish();
+
+        assertEquals(duration, stats.getDuration(Phase.PHOTOS));
+    }
+
+    @Test
+    public void countersAreIncrementedAndSet() {
+        SyncStats stats = new SyncStats(0);
+
+        stats.increment(Counter.CREATED);
+        stats.increment(Counter.CREATED);
+        stats.add(Counter.RECEIVED_BYTES, 1000);
+        stats.add(Counter.RECEIVED_BYTES, 24);
+        stats.set(Counter.LOADED, 7);
+        stats.set(Counter.LOADED, 5);
+
+        assertEquals(2, stats.get(Counter.CREATED));
+        assertEquals(1024, stats.get(Counter.RECEIVED_BYTES));
+        assertEquals(5, stats.get(Counter.LOADED));
+        assertEquals(0, stats.get(Counter.FAILED));
+    }
+
+    /**
+     * Names in log do not depend on locale of device.
+     */
+    @Test
+    public void namesDoNotDependOnLocale() {
+        SyncStats stats = new SyncStats(0);
+        stats.increment(Counter.FAILED);
+        stats.setFinishedAt(10);
+
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            String text = stats.toString();
+            assertTrue(text, text.startsWith("total=10ms "));
+            assertTrue(text, text.contains(" failed=1 "));
+            assertTrue(text, text.contains(" received_bytes=0 "));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+}
@@ -0,0 +1,43 @@
+package grytsenko.contacts.common.model;
+
+import java.io.Serializable;
+
+/**
+ * Changes of groups of user and their contacts.
+ */
+public class Changes implements Serializable {
+
+    private static final long serialVersionUID = 4031958221474937412L;
+
+    private String location;
+    private String watermark;
+    private boolean changed;
+
+    public Changes() {
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public String getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(String watermark) {
+        this.watermark = watermark;
+    }
+
+    public boolean isChanged() {
+        return changed;
+    }
+
+    public void setChanged(boolean changed) {
+        this.changed = changed;
+    }
+
+}
@@ -22,6 +22,7 @@ public class Contact implements Serializable {
     private String location;
 
     private String version;
+    private String hash;
 
     public Contact() {
     }
@@ -90,4 +91,12 @@ public class Contact implements Serializable {
         this.version = version;
     }
 
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
 }
@@ -0,0 +1,34 @@
+package grytsenko.contacts.common.model;
+
+import java.io.Serializable;
+
+/**
+ * Compact summary of contacts, that are known to client.
+ * 
+ * <p>
+ * Contacts are distributed between buckets by usernames, summary contains
+ * one digest for each bucket.
+ * 
+ * @see grytsenko.contacts.common.util.ContactsDigest
+ */
+public class ContactsSummary implements Serializable {
+
+    private static final long serialVersionUID = 6309284316577028137L;
+
+    private long[] digests;
+
+    public ContactsSummary() {
+    }
+
+    /**
+     * Returns the digests of buckets.
+     */
+    public long[] getDigests() {
+        return digests;
+    }
+
+    public void setDigests(long[] digests) {
+        this.digests = digests;
+    }
+
+}
@@ -0,0 +1,45 @@
+package grytsenko.contacts.common.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Group of contacts.
+ */
+public class Group implements Serializable {
+
+    private static final long serialVersionUID = -2716094735611253094L;
+
+    private String name;
+    private String title;
+
+    private List<String> members;
+
+    public Group() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<String> members) {
+        this.members = members;
+    }
+
+}
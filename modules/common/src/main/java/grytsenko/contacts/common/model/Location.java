@@ -0,0 +1,64 @@
+package grytsenko.contacts.common.model;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Location in hierarchy of locations, for example <code>Kyiv/Podil</code>.
+ */
+public class Location implements Serializable {
+
+    private static final long serialVersionUID = -6254731085170329841L;
+
+    private String name;
+    private String path;
+    private int count;
+
+    private List<Location> children;
+
+    public Location() {
+    }
+
+    /**
+     * Returns the last part of path.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the full path, parts of which are separated by slashes.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Returns the number of people from this location and all nested
+     * locations.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public List<Location> getChildren() {
+        return children;
+    }
+
+    public void setChildren(List<Location> children) {
+        this.children = children;
+    }
+
+}
@@ -0,0 +1,160 @@
+package grytsenko.contacts.common.util;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Calculates digests of buckets of contacts.
+ * 
+ * <p>
+ * Each contact is placed to bucket by its username. Digest of bucket is the
+ * sum of digests of its contacts, so it does not depend on order of
+ * contacts. Digest of contact is calculated using its username, hash and
+ * names of its groups, so digest is changed, if contact is added, removed,
+ * changed or moved to other groups.
+ * 
+ * <p>
+ * Client and server calculate digests in the same way, so they can find
+ * buckets with differences without exchanging contacts.
+ */
+public final class ContactsDigest {
+
+    /**
+     * The maximum number of buckets.
+     */
+    public static final int MAX_BUCKETS = 4096;
+
+    /**
+     * The expected number of contacts in one bucket.
+     */
+    static final int BUCKET_SIZE = 4;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long[] digests;
+
+    /**
+     * Creates empty digest with the given number of buckets.
+     */
+    public ContactsDigest(int bucketsNum) {
+        if (bucketsNum < 1 || bucketsNum > MAX_BUCKETS) {
+            throw new IllegalArgumentException("Invalid number of buckets.");
+        }
+
+        digests = new long[bucketsNum];
+    }
+
+    /**
+     * Returns the number of buckets for the given number of contacts.
+     */
+    public static int bucketsFor(int contactsNum) {
+        int bucketsNum = contactsNum / BUCKET_SIZE;
+        return Math.max(1, Math.min(bucketsNum, MAX_BUCKETS));
+    }
+
+    /**
+     * Adds contact to its bucket.
+     * 
+     * @param username
+     *            the username of contact.
+     * @param hash
+     *            the hash of contact.
+     * @param groups
+     *            the names of groups, that contain contact.
+     */
+    public void add(String username, String hash, Collection<String> groups) {
+        long digest = hash(FNV_OFFSET, username);
+        digest = hash(digest, hash);
+
+        if (groups != null) {
+            List<String> sortedGroups = new ArrayList<String>(groups);
+            Collections.sort(sortedGroups);
+            for (String group : sortedGroups) {
+                digest = hash(digest, group);
+            }
+        }
+
+        digests[bucketOf(username)] += mix(digest);
+    }
+
+    /**
+     * Adds contacts of groups to their buckets.
+     * 
+     * @param groups
+     *            the groups, that contain contacts.
+     * @param contacts
+     *            the contacts from these groups, each contact is included
+     *            once.
+     */
+    public void addAll(List<Group> groups, Collection<Contact> contacts) {
+        Map<String, Set<String>> memberships = new HashMap<String, Set<String>>();
+        for (Group group : groups) {
+            for (String member : group.getMembers()) {
+                Set<String> names = memberships.get(member);
+                if (names == null) {
+                    names = new HashSet<String>();
+                    memberships.put(member, names);
+                }
+                names.add(group.getName());
+            }
+        }
+
+        for (Contact contact : contacts) {
+            add(contact.getUsername(), contact.getHash(),
+                    memberships.get(contact.getUsername()));
+        }
+    }
+
+    /**
+     * Returns the bucket of contact.
+     */
+    public int bucketOf(String username) {
+        long digest = mix(hash(FNV_OFFSET, username));
+        return (int) ((digest >>> 1) % digests.length);
+    }
+
+    /**
+     * Returns the digests of buckets.
+     */
+    public long[] getDigests() {
+        return digests;
+    }
+
+    /**
+     * Hashes string using FNV-1a, the end of string is hashed too.
+     */
+    private static long hash(long digest, String str) {
+        if (str != null) {
+            for (int i = 0; i < str.length(); ++i) {
+                digest ^= str.charAt(i);
+                digest *= FNV_PRIME;
+            }
+        }
+        digest ^= 0xffff;
+        digest *= FNV_PRIME;
+        return digest;
+    }
+
+    /**
+     * Spreads bits of digest.
+     */
+    private static long mix(long digest) {
+        digest ^= digest >>> 33;
+        digest *= 0xff51afd7ed558ccdL;
+        digest ^= digest >>> 33;
+        digest *= 0xc4ceb9fe1a85ec53L;
+        digest ^= digest >>> 33;
+        return digest;
+    }
+
+}
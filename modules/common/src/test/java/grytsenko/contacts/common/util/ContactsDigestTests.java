@@ -0,0 +1,168 @@
+package grytsenko.contacts.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that client and service calculate the same digests of buckets.
+ * 
+ * <p>
+ * Service adds groups and their contacts, client adds each contact with
+ * names of its groups.
+ */
+public class ContactsDigestTests {
+
+    private static final int CONTACTS_NUM = 200;
+    private static final String[] GROUPS = { "coworkers", "Kyiv", "Lviv",
+            "favorites" };
+
+    /**
+     * Hashes of contacts by usernames, in order of adding.
+     */
+    private Map<String, String> hashes;
+
+    /**
+     * Names of groups of contacts by usernames.
+     */
+    private Map<String, Set<String>> memberships;
+
+    private int bucketsNum;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(7);
+        hashes = new LinkedHashMap<String, String>();
+        memberships = new LinkedHashMap<String, Set<String>>();
+        for (int i = 0; i < CONTACTS_NUM; ++i) {
+            String username = "user" + i;
+            hashes.put(username, Long.toHexString(random.nextLong()));
+
+            Set<String> groups = new HashSet<String>();
+            groups.add(GROUPS[random.nextInt(GROUPS.length)]);
+            if (random.nextBoolean()) {
+                groups.add(GROUPS[random.nextInt(GROUPS.length)]);
+            }
+            memberships.put(username, groups);
+        }
+
+        bucketsNum = ContactsDigest.bucketsFor(CONTACTS_NUM);
+    }
+
+    @Test
+    public void clientAndServiceCalculateSameDigests() {
+        assertEquals(CONTACTS_NUM / ContactsDigest.BUCKET_SIZE, bucketsNum);
+        assertArrayEquals(ofClient(), ofService());
+    }
+
+    @Test
+    public void changedContactChangesOneBucket() {
+        long[] before = ofClient();
+        hashes.put("user17", "changed");
+        assertOneBucketDiffers(before, "user17");
+    }
+
+    @Test
+    public void removedContactChangesOneBucket() {
+        long[] before = ofClient();
+        hashes.remove("user42");
+        memberships.remove("user42");
+        assertOneBucketDiffers(before, "user42");
+    }
+
+    @Test
+    public void addedContactChangesOneBucket() {
+        long[] before = ofClient();
+        hashes.put("user" + CONTACTS_NUM, "added");
+        memberships.put("user" + CONTACTS_NUM,
+                Collections.singleton(GROUPS[0]));
+        assertOneBucketDiffers(before, "user" + CONTACTS_NUM);
+    }
+
+    @Test
+    public void movedContactChangesOneBucket() {
+        long[] before = ofClient();
+        Set<String> groups = memberships.get("user99");
+        String group = groups.contains("Kyiv") ? "Lviv" : "Kyiv";
+        memberships.put("user99", Collections.singleton(group));
+        assertOneBucketDiffers(before, "user99");
+    }
+
+    /**
+     * Checks that only bucket of the given contact differs and that both
+     * client and service see this difference.
+     */
+    private void assertOneBucketDiffers(long[] before, String username) {
+        long[] after = ofService();
+        assertArrayEquals(ofClient(), after);
+
+        int bucket = new ContactsDigest(bucketsNum).bucketOf(username);
+        for (int i = 0; i < bucketsNum; ++i) {
+            if (i == bucket) {
+                assertTrue(before[i] != after[i]);
+            } else {
+                assertEquals(before[i], after[i]);
+            }
+        }
+    }
+
+    /**
+     * Calculates digests as client does.
+     */
+    private long[] ofClient() {
+        ContactsDigest digest = new ContactsDigest(bucketsNum);
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            String username = entry.getKey();
+            digest.add(username, entry.getValue(), memberships.get(username));
+        }
+        return digest.getDigests();
+    }
+
+    /**
+     * Calculates digests as service does, contacts are added in other order.
+     */
+    private long[] ofService() {
+        List<Group> groups = new ArrayList<Group>();
+        for (String name : GROUPS) {
+            Group group = new Group();
+            group.setName(name);
+            group.setMembers(new ArrayList<String>());
+            groups.add(group);
+        }
+        for (Map.Entry<String, Set<String>> entry : memberships.entrySet()) {
+            for (Group group : groups) {
+                if (entry.getValue().contains(group.getName())) {
+                    group.getMembers().add(entry.getKey());
+                }
+            }
+        }
+
+        List<Contact> contacts = new ArrayList<Contact>();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            Contact contact = new Contact();
+            contact.setUsername(entry.getKey());
+            contact.setHash(entry.getValue());
+            contacts.add(contact);
+        }
+        Collections.reverse(contacts);
+
+        ContactsDigest digest = new ContactsDigest(bucketsNum);
+        digest.addAll(groups, contacts);
+        return digest.getDigests();
+    }
+
+}
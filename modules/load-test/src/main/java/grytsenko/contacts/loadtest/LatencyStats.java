@@ -0,0 +1,93 @@
+package grytsenko.contacts.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Collects latencies of requests.
+ * 
+ * <p>
+ * Each client has its own statistics, so no synchronization is needed while
+ * test runs. Statistics are merged after test.
+ */
+public class LatencyStats {
+
+    private long[] latencies = new long[1024];
+    private int size;
+    private int errors;
+    private int rejected;
+
+    /**
+     * Adds latency of successful request in microseconds.
+     */
+    public void add(long latency) {
+        if (size == latencies.length) {
+            latencies = Arrays.copyOf(latencies, size * 2);
+        }
+        latencies[size++] = latency;
+    }
+
+    /**
+     * Counts failed request.
+     */
+    public void addError() {
+        ++errors;
+    }
+
+    /**
+     * Counts request, that was rejected, because service was busy.
+     */
+    public void addRejected() {
+        ++rejected;
+    }
+
+    /**
+     * Adds all latencies from other statistics.
+     */
+    public void merge(LatencyStats other) {
+        for (int i = 0; i < other.size; ++i) {
+            add(other.latencies[i]);
+        }
+        errors += other.errors;
+        rejected += other.rejected;
+    }
+
+    /**
+     * Returns the number of successful requests.
+     */
+    public int getCount() {
+        return size;
+    }
+
+    /**
+     * Returns the number of failed requests.
+     */
+    public int getErrors() {
+        return errors;
+    }
+
+    /**
+     * Returns the number of rejected requests.
+     */
+    public int getRejected() {
+        return rejected;
+    }
+
+    /**
+     * Returns the latency in microseconds, that is not exceeded by the given
+     * part of requests.
+     * 
+     * @param percentile
+     *            the percentile from 0 to 100.
+     */
+    public long getPercentile(double percentile) {
+        if (size == 0) {
+            return 0;
+        }
+
+        long[] sorted = Arrays.copyOf(latencies, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))];
+    }
+
+}
@@ -0,0 +1,291 @@
+package grytsenko.contacts.loadtest;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.util.thread.ExecutorThreadPool;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.webapp.WebAppContext;
+
+import com.unboundid.util.Base64;
+
+/**
+ * Runs REST services against synthetic directory and measures them under load
+ * of many concurrent clients.
+ * 
+ * <p>
+ * Parameters are passed as system properties:
+ * <ul>
+ * <li><code>war</code> - the path to WAR of REST services;</li>
+ * <li><code>users</code> - the number of users in directory;</li>
+ * <li><code>locations</code> - the number of locations;</li>
+ * <li><code>clients</code> - the number of concurrent clients;</li>
+ * <li><code>warmup</code> - the duration of warm-up in seconds;</li>
+ * <li><code>duration</code> - the duration of test in seconds;</li>
+ * <li><code>seed</code> - the seed for generated data and requests;</li>
+ * <li><code>latency</code> - the delay of each operation in directory service
+ * in milliseconds;</li>
+ * <li><code>threads</code> - <code>platform</code> to serve requests by pool of
+ * threads or <code>virtual</code> to serve each request by its own virtual
+ * thread (requires JDK 21).</li>
+ * </ul>
+ */
+public class LoadTest {
+
+    private static final String[] PATHS = { "/contacts/my.json",
+            "/contacts/coworkers.json" };
+
+    public static void main(String[] args) throws Exception {
+        String war = System.getProperty("war", "target/contacts.war");
+        int usersNum = Integer.getInteger("users", 100000);
+        int locationsNum = Integer.getInteger("locations", 100);
+        int clientsNum = Integer.getInteger("clients", 50);
+        int warmup = Integer.getInteger("warmup", 10);
+        int duration = Integer.getInteger("duration", 60);
+        long seed = Long.getLong("seed", 1L);
+        long latency = Long.getLong("latency", 0L);
+        String threads = System.getProperty("threads", "platform");
+
+        System.out.printf("Generate directory with %d users in %d locations.%n",
+                usersNum, locationsNum);
+        SyntheticDirectory directory = new SyntheticDirectory(usersNum,
+                locationsNum, latency);
+        String ldapUrl = directory.start(seed);
+
+        System.setProperty("ldap.url", ldapUrl);
+        System.setProperty("log4j.configuration", quietLogging().toURI()
+                .toString());
+        System.setProperty("http.maxConnections", Integer.toString(clientsNum));
+
+        Server server = new Server();
+        server.setThreadPool(threadPool(threads));
+        SelectChannelConnector connector = new SelectChannelConnector();
+        connector.setHost("localhost");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/contacts");
+        context.setWar(war);
+        server.setHandler(context);
+        server.start();
+
+        String baseUrl = "http://localhost:" + connector.getLocalPort();
+        System.out.printf("Services started at %s on %s threads.%n", baseUrl,
+                threads);
+
+        try {
+            run(baseUrl, usersNum, clientsNum, warmup, seed);
+            directory.resetCounters();
+            LatencyStats[] stats = run(baseUrl, usersNum, clientsNum,
+                    duration, seed + 1);
+            report(stats, duration, directory);
+        } finally {
+            server.stop();
+            directory.stop();
+        }
+    }
+
+    /**
+     * Runs clients for the given time.
+     * 
+     * @return the statistics for each path.
+     */
+    private static LatencyStats[] run(String baseUrl, int usersNum,
+            int clientsNum, int duration, long seed)
+            throws InterruptedException {
+        long finishAt = System.nanoTime() + duration * 1000000000L;
+
+        List<Client> clients = new ArrayList<Client>();
+        CountDownLatch finished = new CountDownLatch(clientsNum);
+        for (int i = 0; i < clientsNum; ++i) {
+            Client client = new Client(baseUrl, usersNum, seed + i, finishAt,
+                    finished);
+            clients.add(client);
+            new Thread(client, "client-" + i).start();
+        }
+        finished.await();
+
+        LatencyStats[] stats = new LatencyStats[PATHS.length];
+        for (int i = 0; i < PATHS.length; ++i) {
+            stats[i] = new LatencyStats();
+            for (Client client : clients) {
+                stats[i].merge(client.stats[i]);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Creates pool of threads, that serve requests.
+     */
+    private static ThreadPool threadPool(String threads) throws Exception {
+        if ("platform".equals(threads)) {
+            return new QueuedThreadPool();
+        }
+        if (!"virtual".equals(threads)) {
+            throw new IllegalArgumentException("Unknown threads: " + threads);
+        }
+
+        Method factory;
+        try {
+            factory = Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException exception) {
+            throw new IllegalStateException(
+                    "Virtual threads are not supported by this JDK.");
+        }
+        return new ExecutorThreadPool((ExecutorService) factory.invoke(null));
+    }
+
+    private static void report(LatencyStats[] stats, int duration,
+            SyntheticDirectory directory) {
+        System.out.println();
+        System.out.printf("%-28s %10s %8s %8s %8s %8s %8s %8s %8s%n", "path",
+                "requests", "errors", "busy", "req/s", "p50 ms", "p90 ms",
+                "p99 ms", "max ms");
+
+        long total = 0;
+        for (int i = 0; i < PATHS.length; ++i) {
+            LatencyStats pathStats = stats[i];
+            total += pathStats.getCount();
+            System.out.printf(
+                    "%-28s %10d %8d %8d %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                    PATHS[i], pathStats.getCount(), pathStats.getErrors(),
+                    pathStats.getRejected(),
+                    pathStats.getCount() / (double) duration,
+                    pathStats.getPercentile(50) / 1000.0,
+                    pathStats.getPercentile(90) / 1000.0,
+                    pathStats.getPercentile(99) / 1000.0,
+                    pathStats.getPercentile(100) / 1000.0);
+        }
+
+        System.out.println();
+        System.out.printf("Throughput: %.1f req/s.%n", total
+                / (double) duration);
+        System.out.printf("LDAP: %d searches, %d binds (%.2f operations per"
+                + " request).%n", directory.getSearches(), directory
+                .getBinds(), (directory.getSearches() + directory.getBinds())
+                / (double) Math.max(total, 1));
+    }
+
+    /**
+     * Creates configuration, that turns off debug logging of services.
+     */
+    static File quietLogging() throws IOException {
+        File file = File.createTempFile("log4j", ".properties");
+        file.deleteOnExit();
+
+        OutputStream stream = new FileOutputStream(file);
+        try {
+            stream.write(("log4j.rootLogger=WARN, A1\n"
+                    + "log4j.appender.A1=org.apache.log4j.ConsoleAppender\n"
+                    + "log4j.appender.A1.layout=org.apache.log4j.PatternLayout\n"
+                    + "log4j.appender.A1.layout.ConversionPattern=%d %-5p %c - %m%n\n")
+                    .getBytes("UTF-8"));
+        } finally {
+            stream.close();
+        }
+        return file;
+    }
+
+    /**
+     * Client, that sends requests for random users one by one.
+     */
+    private static class Client implements Runnable {
+
+        private final String baseUrl;
+        private final int usersNum;
+        private final Random random;
+        private final long finishAt;
+        private final CountDownLatch finished;
+
+        private final LatencyStats[] stats;
+
+        private final byte[] buffer = new byte[8192];
+
+        Client(String baseUrl, int usersNum, long seed, long finishAt,
+                CountDownLatch finished) {
+            this.baseUrl = baseUrl;
+            this.usersNum = usersNum;
+            this.random = new Random(seed);
+            this.finishAt = finishAt;
+            this.finished = finished;
+
+            stats = new LatencyStats[PATHS.length];
+            for (int i = 0; i < PATHS.length; ++i) {
+                stats[i] = new LatencyStats();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (System.nanoTime() < finishAt) {
+                    int path = random.nextInt(PATHS.length);
+                    String username = SyntheticDirectory.username(random
+                            .nextInt(usersNum));
+
+                    long startedAt = System.nanoTime();
+                    int status = send(PATHS[path], username);
+                    if (status == HttpURLConnection.HTTP_OK) {
+                        stats[path].add((System.nanoTime() - startedAt) / 1000L);
+                    } else if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+                        stats[path].addRejected();
+                    } else {
+                        stats[path].addError();
+                    }
+                }
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Sends request and returns status of response or <code>-1</code>, if
+         * request failed.
+         */
+        private int send(String path, String username) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(
+                        baseUrl + path).openConnection();
+                String credentials = username + ':'
+                        + SyntheticDirectory.PASSWORD;
+                connection.setRequestProperty("Authorization", "Basic "
+                        + Base64.encode(credentials.getBytes("UTF-8")));
+
+                int status = connection.getResponseCode();
+                InputStream stream = status < 400 ? connection
+                        .getInputStream() : connection.getErrorStream();
+                if (stream != null) {
+                    try {
+                        while (stream.read(buffer) >= 0) {
+                        }
+                    } finally {
+                        stream.close();
+                    }
+                }
+                return status;
+            } catch (IOException exception) {
+                return -1;
+            }
+        }
+
+    }
+
+}
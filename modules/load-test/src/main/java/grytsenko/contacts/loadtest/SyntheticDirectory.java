@@ -0,0 +1,200 @@
+package grytsenko.contacts.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSearchRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryInterceptedSimpleBindRequest;
+import com.unboundid.ldap.listener.interceptor.InMemoryOperationInterceptor;
+import com.unboundid.ldap.sdk.Entry;
+import com.unboundid.ldap.sdk.LDAPException;
+
+/**
+ * In-memory directory service with synthetic users.
+ * 
+ * <p>
+ * Users are generated from seed, so the same directory is created for the
+ * same parameters.
+ */
+public class SyntheticDirectory {
+
+    public static final String BASE = "dc=test,dc=com";
+    public static final String USERS = "ou=Users," + BASE;
+
+    public static final String PASSWORD = "pass";
+
+    private static final String[] FIRST_NAMES = { "Ivan", "Petr", "Kuzma",
+            "Pavel", "Anton", "Olga", "Anna", "Maria" };
+    private static final String[] LAST_NAMES = { "Ivanov", "Petrov",
+            "Kuznetsov", "Popov", "Grytsenko", "Sidorov", "Smirnov" };
+
+    private final int usersNum;
+    private final int locationsNum;
+    private final long latency;
+
+    private InMemoryDirectoryServer server;
+
+    private final AtomicLong searches = new AtomicLong();
+    private final AtomicLong binds = new AtomicLong();
+    private final ConcurrentMap<String, AtomicLong> searchesByFilter = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Creates directory with the given number of users, that are distributed
+     * evenly between locations.
+     * 
+     * @param latency
+     *            the delay of each search and bind in milliseconds, that
+     *            simulates slow directory service.
+     */
+    public SyntheticDirectory(int usersNum, int locationsNum, long latency) {
+        this.usersNum = usersNum;
+        this.locationsNum = locationsNum;
+        this.latency = latency;
+    }
+
+    /**
+     * Returns the username of user with the given index.
+     */
+    public static String username(int index) {
+        return String.format("user%06d", index);
+    }
+
+    /**
+     * Returns the location of user with the given index.
+     */
+    public String location(int index) {
+        return "Location " + (index % locationsNum);
+    }
+
+    /**
+     * Starts directory service on random port.
+     * 
+     * @return the URL of directory service without base.
+     */
+    public String start(long seed) throws LDAPException {
+        InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(
+                BASE);
+        config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig(
+                "default", 0));
+        config.setEqualityIndexAttributes("uid", "l", "uniqueMember");
+        config.addInMemoryOperationInterceptor(new CountingInterceptor());
+
+        server = new InMemoryDirectoryServer(config);
+        Entry base = new Entry(BASE);
+        base.addAttribute("objectClass", "top", "domain");
+        base.addAttribute("dc", "test");
+        server.add(base);
+
+        Entry users = new Entry(USERS);
+        users.addAttribute("objectClass", "top", "organizationalUnit");
+        users.addAttribute("ou", "Users");
+        server.add(users);
+
+        Random random = new Random(seed);
+        for (int i = 0; i < usersNum; ++i) {
+            String username = username(i);
+            Entry entry = new Entry("cn=" + username + "," + USERS);
+            entry.addAttribute("objectClass", "top", "person",
+                    "organizationalPerson", "inetOrgPerson");
+            entry.addAttribute("uid", username);
+            entry.addAttribute("cn", username);
+            entry.addAttribute("givenName",
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]);
+            entry.addAttribute("sn",
+                    LAST_NAMES[random.nextInt(LAST_NAMES.length)]);
+            entry.addAttribute("mail", username + "@test.com");
+            entry.addAttribute("mobile",
+                    String.format("380%07d", random.nextInt(10000000)));
+            entry.addAttribute("l", location(i));
+            entry.addAttribute("userPassword", PASSWORD);
+            server.add(entry);
+        }
+
+        server.startListening();
+        return "ldap://localhost:" + server.getListenPort();
+    }
+
+    /**
+     * Stops directory service.
+     */
+    public void stop() {
+        server.shutDown(true);
+    }
+
+    /**
+     * Returns the number of search operations.
+     */
+    public long getSearches() {
+        return searches.get();
+    }
+
+    /**
+     * Returns the number of search operations with the given filter, for
+     * example <code>(l=Location 1)</code>.
+     */
+    public long getSearches(String filter) {
+        AtomicLong counter = searchesByFilter.get(filter);
+        return counter != null ? counter.get() : 0;
+    }
+
+    /**
+     * Returns the number of bind operations.
+     */
+    public long getBinds() {
+        return binds.get();
+    }
+
+    /**
+     * Resets counters of operations.
+     */
+    public void resetCounters() {
+        searches.set(0);
+        binds.set(0);
+        searchesByFilter.clear();
+    }
+
+    private class CountingInterceptor extends InMemoryOperationInterceptor {
+
+        @Override
+        public void processSearchRequest(
+                InMemoryInterceptedSearchRequest request) {
+            searches.incrementAndGet();
+
+            String filter = request.getRequest().getFilter().toString();
+            AtomicLong counter = searchesByFilter.get(filter);
+            if (counter == null) {
+                searchesByFilter.putIfAbsent(filter, new AtomicLong());
+                counter = searchesByFilter.get(filter);
+            }
+            counter.incrementAndGet();
+
+            delay();
+        }
+
+        @Override
+        public void processSimpleBindRequest(
+                InMemoryInterceptedSimpleBindRequest request) {
+            binds.incrementAndGet();
+            delay();
+        }
+
+        private void delay() {
+            if (latency <= 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+    }
+
+}
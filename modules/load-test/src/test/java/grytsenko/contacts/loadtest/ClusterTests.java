@@ -0,0 +1,259 @@
+package grytsenko.contacts.loadtest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.nio.SelectChannelConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.unboundid.util.Base64;
+
+/**
+ * Runs several nodes of REST services in clustered mode on embedded Jetty.
+ * 
+ * <p>
+ * Nodes are started in one JVM, settings of cluster are passed to each node
+ * as parameters of servlet context. WAR of REST services is passed through
+ * system property <code>war</code>.
+ */
+public class ClusterTests {
+
+    private static final int USERS_NUM = 200;
+    private static final int LOCATIONS_NUM = 10;
+
+    private static final int NODES_NUM = 3;
+
+    private static final String SECRET = "secret";
+    private static final int TIMEOUT = 1000;
+
+    private static SyntheticDirectory directory;
+
+    private static final List<Server> servers = new ArrayList<Server>();
+    private static final List<String> nodes = new ArrayList<String>();
+
+    /**
+     * Node in cluster with silent node, that accepts connections, but never
+     * responds.
+     */
+    private static String lonelyNode;
+    private static ServerSocket silentNode;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        System.setProperty("log4j.configuration", LoadTest.quietLogging()
+                .toURI().toString());
+
+        directory = new SyntheticDirectory(USERS_NUM, LOCATIONS_NUM, 0);
+        System.setProperty("ldap.url", directory.start(1L));
+
+        List<Integer> ports = new ArrayList<Integer>();
+        for (int i = 0; i < NODES_NUM; ++i) {
+            ports.add(freePort());
+            nodes.add(url(ports.get(i)));
+        }
+        String cluster = join(nodes);
+        for (int i = 0; i < NODES_NUM; ++i) {
+            startNode(ports.get(i), cluster, nodes.get(i));
+        }
+
+        silentNode = new ServerSocket(0);
+        int lonelyPort = freePort();
+        lonelyNode = url(lonelyPort);
+        startNode(lonelyPort, lonelyNode + "," + url(silentNode.getLocalPort()),
+                lonelyNode);
+
+        for (String node : nodes) {
+            awaitReady(node);
+        }
+        awaitReady(lonelyNode);
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        for (Server server : servers) {
+            server.stop();
+        }
+        if (silentNode != null) {
+            silentNode.close();
+        }
+        if (directory != null) {
+            directory.stop();
+        }
+    }
+
+    /**
+     * Each location is loaded from directory service only by its owner, and
+     * all nodes return the same contacts. Location may be loaded already
+     * during warm-up.
+     */
+    @Test
+    public void locationIsLoadedOncePerCluster() throws Exception {
+        directory.resetCounters();
+
+        for (int i = 0; i < LOCATIONS_NUM; ++i) {
+            String username = SyntheticDirectory.username(i);
+            String expected = null;
+            for (String node : nodes) {
+                Response response = get(node + "/coworkers.json", username,
+                        null);
+                assertEquals(200, response.status);
+                if (expected == null) {
+                    expected = response.body;
+                }
+                assertEquals(expected, response.body);
+            }
+
+            long searches = directory.getSearches("(l="
+                    + directory.location(i) + ")");
+            assertTrue("Location was loaded " + searches + " times.",
+                    searches <= 1);
+        }
+    }
+
+    /**
+     * Node, that did not respond, is not requested again, so only the first
+     * request waits for timeout.
+     */
+    @Test
+    public void silentNodeIsMarkedDown() throws Exception {
+        long startedAt = System.currentTimeMillis();
+        for (int i = 0; i < LOCATIONS_NUM; ++i) {
+            Response response = get(lonelyNode + "/coworkers.json",
+                    SyntheticDirectory.username(i), null);
+            assertEquals(200, response.status);
+        }
+        long duration = System.currentTimeMillis() - startedAt;
+
+        assertTrue("Requests took " + duration + " ms.",
+                duration < 2 * TIMEOUT);
+    }
+
+    /**
+     * Contacts are not returned to other nodes without secret.
+     */
+    @Test
+    public void secretIsRequired() throws Exception {
+        String path = "/cluster/location.json?name=Location%201";
+
+        assertEquals(403, get(nodes.get(0) + path, null, null).status);
+        assertEquals(403, get(nodes.get(0) + path, null, "").status);
+        assertEquals(403, get(nodes.get(0) + path, null, "wrong").status);
+        assertEquals(200, get(nodes.get(0) + path, null, SECRET).status);
+    }
+
+    private static void startNode(int port, String cluster, String self)
+            throws Exception {
+        Server server = new Server();
+        SelectChannelConnector connector = new SelectChannelConnector();
+        connector.setHost("localhost");
+        connector.setPort(port);
+        server.addConnector(connector);
+
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/contacts");
+        context.setWar(System.getProperty("war"));
+        context.setInitParameter("cluster.nodes", cluster);
+        context.setInitParameter("cluster.self", self);
+        context.setInitParameter("cluster.secret", SECRET);
+        context.setInitParameter("cluster.timeout", Integer.toString(TIMEOUT));
+        context.setInitParameter("cluster.downtime", "60000");
+        context.setInitParameter("stats.file",
+                new File(System.getProperty("java.io.tmpdir"),
+                        "contacts-locations-" + port + ".properties").getPath());
+        context.setThrowUnavailableOnStartupException(true);
+        server.setHandler(context);
+
+        servers.add(server);
+        server.start();
+    }
+
+    private static void awaitReady(String node) throws Exception {
+        for (int i = 0; i < 100; ++i) {
+            if (get(node + "/health.json", null, null).status == 200) {
+                return;
+            }
+            Thread.sleep(100);
+        }
+        throw new IllegalStateException("Node " + node + " is not ready.");
+    }
+
+    private static Response get(String url, String username, String secret)
+            throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url)
+                .openConnection();
+        connection.setRequestProperty("Accept", "application/json");
+        if (username != null) {
+            String credentials = username + ':' + SyntheticDirectory.PASSWORD;
+            connection.setRequestProperty("Authorization", "Basic "
+                    + Base64.encode(credentials.getBytes("UTF-8")));
+        }
+        if (secret != null) {
+            connection.setRequestProperty("X-Cluster-Secret", secret);
+        }
+
+        Response response = new Response();
+        response.status = connection.getResponseCode();
+        InputStream stream = response.status < 400 ? connection
+                .getInputStream() : connection.getErrorStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (stream != null) {
+            try {
+                byte[] buffer = new byte[8192];
+                int length;
+                while ((length = stream.read(buffer)) >= 0) {
+                    body.write(buffer, 0, length);
+                }
+            } finally {
+                stream.close();
+            }
+        }
+        response.body = body.toString("UTF-8");
+        return response;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String url(int port) {
+        return "http://localhost:" + port + "/contacts";
+    }
+
+    private static String join(List<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(',');
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    private static class Response {
+
+        int status;
+        String body;
+
+    }
+
+}
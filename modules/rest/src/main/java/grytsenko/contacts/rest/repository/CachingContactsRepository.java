@@ -0,0 +1,289 @@
+package grytsenko.contacts.rest.repository;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.util.LruMap;
+import grytsenko.contacts.rest.util.Refresher;
+import grytsenko.contacts.rest.util.SingleFlight;
+import grytsenko.contacts.rest.util.Staleness;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Caches contacts, that are found by usernames.
+ * 
+ * <p>
+ * Users, that were not found, are cached too. Locations of users, that are
+ * found by projected queries, are cached separately. Entries expire after the
+ * given time, the least recently used entries are evicted, if cache is full.
+ * Cache is split into segments, so requests for different users rarely wait
+ * for each other. Concurrent requests for the same user, that is not cached,
+ * are served by one search.
+ * 
+ * <p>
+ * Expired contacts are refreshed in background. If refresh fails or does not
+ * finish in time, then expired contact is returned and marked as stale.
+ * Expired locations are returned, if search fails.
+ */
+@ManagedResource(description = "Cache of contacts by usernames.")
+public class CachingContactsRepository implements ContactsRepository {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(CachingContactsRepository.class);
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+
+    private ContactsRepository delegate;
+
+    private long ttl = 60000L;
+    private long refreshWait = 500L;
+
+    private Refresher<String, Contact> refresher;
+
+    private final LruMap<String, CachedContact> contacts = new LruMap<String, CachedContact>(
+            DEFAULT_MAX_SIZE);
+    private final LruMap<String, CachedLocation> locations = new LruMap<String, CachedLocation>(
+            DEFAULT_MAX_SIZE);
+
+    private final SingleFlight<String, Contact> contactLoads = new SingleFlight<String, Contact>();
+    private final SingleFlight<String, String> locationLoads = new SingleFlight<String, String>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+
+    /**
+     * Sets repository, that is used to find contacts, if they are not cached.
+     */
+    public void setDelegate(ContactsRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets time in milliseconds, while contact is cached.
+     */
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Sets the maximum number of cached contacts.
+     */
+    public void setMaxSize(int maxSize) {
+        contacts.setMaxSize(maxSize);
+        locations.setMaxSize(maxSize);
+    }
+
+    /**
+     * Sets executor, that refreshes expired contacts.
+     */
+    public void setRefreshExecutor(Executor refreshExecutor) {
+        refresher = new Refresher<String, Contact>(refreshExecutor);
+    }
+
+    /**
+     * Sets time in milliseconds, while request waits for refresh of expired
+     * contact.
+     */
+    public void setRefreshWait(long refreshWait) {
+        this.refreshWait = refreshWait;
+    }
+
+    @Override
+    public Contact findByUsername(final String username) {
+        long now = System.currentTimeMillis();
+
+        CachedContact cached = contacts.get(username);
+        if (cached != null && now - cached.loadedAt < ttl) {
+            hits.incrementAndGet();
+            return cached.contact;
+        }
+
+        misses.incrementAndGet();
+
+        Callable<Contact> loader = new Callable<Contact>() {
+            @Override
+            public Contact call() {
+                return load(username);
+            }
+        };
+
+        if (cached == null) {
+            LOGGER.debug("Contact for {} is not cached.", username);
+            return contactLoads.load(username, loader);
+        }
+
+        LOGGER.debug("Contact for {} is expired.", username);
+
+        try {
+            return refresher.refresh(username, loader).get(refreshWait,
+                    TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            LOGGER.debug("Refresh of contact for {} is slow.", username);
+        } catch (ExecutionException exception) {
+            LOGGER.warn("Could not refresh contact for {}: {}", username,
+                    exception.getCause().getMessage());
+        } catch (RejectedExecutionException exception) {
+            LOGGER.warn("Could not start refresh of contact for {}.", username);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        stale.incrementAndGet();
+        Staleness.markStale(cached.loadedAt);
+        return cached.contact;
+    }
+
+    /**
+     * Returns location from cached contact, if it is cached. Otherwise
+     * location is searched by delegate.
+     * 
+     * <p>
+     * If search fails, then the latest expired location is returned.
+     */
+    @Override
+    public String findLocationByUsername(final String username) {
+        final long now = System.currentTimeMillis();
+
+        CachedContact cachedContact = contacts.get(username);
+        if (cachedContact != null && now - cachedContact.loadedAt < ttl) {
+            hits.incrementAndGet();
+            return cachedContact.getLocation();
+        }
+
+        CachedLocation cached = locations.get(username);
+        if (cached != null && now - cached.loadedAt < ttl) {
+            hits.incrementAndGet();
+            return cached.location;
+        }
+
+        if (cachedContact != null
+                && (cached == null || cachedContact.loadedAt > cached.loadedAt)) {
+            cached = new CachedLocation(cachedContact.getLocation(),
+                    cachedContact.loadedAt);
+        }
+
+        misses.incrementAndGet();
+
+        try {
+            return locationLoads.load(username, new Callable<String>() {
+                @Override
+                public String call() {
+                    String location = delegate
+                            .findLocationByUsername(username);
+                    locations.put(username, new CachedLocation(location, now));
+                    return location;
+                }
+            });
+        } catch (RuntimeException exception) {
+            if (cached == null) {
+                throw exception;
+            }
+
+            LOGGER.warn("Could not search location of {}: {}", username,
+                    exception.getMessage());
+            stale.incrementAndGet();
+            Staleness.markStale(cached.loadedAt);
+            return cached.location;
+        }
+    }
+
+    @Override
+    public List<Contact> findByLocation(String location) {
+        return delegate.findByLocation(location);
+    }
+
+    @Override
+    public void findAll(String cursor, ContactCallback callback) {
+        delegate.findAll(cursor, callback);
+    }
+
+    @ManagedAttribute(description = "Number of requests, that were served from cache.")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests, that were not served from cache.")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests, that were served by expired contacts.")
+    public long getStale() {
+        return stale.get();
+    }
+
+    @ManagedAttribute(description = "Number of contacts, that were evicted from full cache.")
+    public long getEvictions() {
+        return contacts.getEvictions() + locations.getEvictions();
+    }
+
+    @ManagedAttribute(description = "Number of cached contacts.")
+    public int getSize() {
+        return contacts.size();
+    }
+
+    @ManagedOperation(description = "Removes all cached contacts.")
+    public void clear() {
+        contacts.clear();
+        locations.clear();
+    }
+
+    /**
+     * Finds contact by delegate and caches it.
+     */
+    private Contact load(String username) {
+        long now = System.currentTimeMillis();
+
+        Contact contact = delegate.findByUsername(username);
+        contacts.put(username, new CachedContact(contact, now));
+        return contact;
+    }
+
+    /**
+     * Contact or <code>null</code>, if contact was not found.
+     */
+    private static class CachedContact {
+
+        final Contact contact;
+        final long loadedAt;
+
+        CachedContact(Contact contact, long loadedAt) {
+            this.contact = contact;
+            this.loadedAt = loadedAt;
+        }
+
+        String getLocation() {
+            return contact != null ? contact.getLocation() : null;
+        }
+
+    }
+
+    /**
+     * Location or <code>null</code>, if user was not found.
+     */
+    private static class CachedLocation {
+
+        final String location;
+        final long loadedAt;
+
+        CachedLocation(String location, long loadedAt) {
+            this.location = location;
+            this.loadedAt = loadedAt;
+        }
+
+    }
+
+}
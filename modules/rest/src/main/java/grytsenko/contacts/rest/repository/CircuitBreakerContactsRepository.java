@@ -0,0 +1,295 @@
+package grytsenko.contacts.rest.repository;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.ldap.NamingException;
+
+/**
+ * Stops calls to directory service, if it fails or responds slowly.
+ * 
+ * <p>
+ * Circuit is opened, if the given part of recent calls failed or were slow.
+ * While circuit is open, calls are rejected with
+ * {@link DirectoryBusyException}. After some time one trial call is allowed;
+ * circuit is closed, if this call succeeds, and is opened again otherwise.
+ * If trial call is still running after time of slow call, then it is
+ * considered as failed, so hung call does not keep circuit half-open. Export
+ * of all contacts does not start trial calls, because it is slow by nature.
+ * 
+ * <p>
+ * Only errors of directory service and slow calls are counted as failures.
+ * Calls, that could not start, because the limit of concurrent operations
+ * is reached, are counted as rejected, so spike of requests to healthy
+ * directory service does not open circuit.
+ */
+@ManagedResource(description = "Circuit breaker of directory service.")
+public class CircuitBreakerContactsRepository implements ContactsRepository {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(CircuitBreakerContactsRepository.class);
+
+    /**
+     * States of circuit.
+     */
+    private enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private ContactsRepository delegate;
+
+    private double failureRate = 0.5;
+    private long slowCallTime = 2000L;
+    private int minCalls = 10;
+    private long openTime = 30000L;
+
+    private boolean[] window = new boolean[20];
+    private int position;
+    private int calls;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+
+    private Thread trialThread;
+    private long trialStartedAt;
+
+    private final AtomicLong opened = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Sets repository, that is used to find contacts.
+     */
+    public void setDelegate(ContactsRepository delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets part of failed calls from 0 to 1, when circuit is opened.
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Sets time in milliseconds, after which call is considered as slow.
+     */
+    public void setSlowCallTime(long slowCallTime) {
+        this.slowCallTime = slowCallTime;
+    }
+
+    /**
+     * Sets the number of recent calls, that are taken into account.
+     */
+    public synchronized void setWindowSize(int windowSize) {
+        window = new boolean[windowSize];
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+    /**
+     * Sets the minimum number of calls, before circuit can be opened.
+     */
+    public void setMinCalls(int minCalls) {
+        this.minCalls = minCalls;
+    }
+
+    /**
+     * Sets time in milliseconds, while circuit is open.
+     */
+    public void setOpenTime(long openTime) {
+        this.openTime = openTime;
+    }
+
+    @Override
+    public Contact findByUsername(String username) {
+        long startedAt = allow(true);
+        try {
+            Contact contact = delegate.findByUsername(username);
+            record(System.currentTimeMillis() - startedAt, null);
+            return contact;
+        } catch (RuntimeException exception) {
+            record(System.currentTimeMillis() - startedAt, exception);
+            throw exception;
+        }
+    }
+
+    @Override
+    public String findLocationByUsername(String username) {
+        long startedAt = allow(true);
+        try {
+            String location = delegate.findLocationByUsername(username);
+            record(System.currentTimeMillis() - startedAt, null);
+            return location;
+        } catch (RuntimeException exception) {
+            record(System.currentTimeMillis() - startedAt, exception);
+            throw exception;
+        }
+    }
+
+    @Override
+    public List<Contact> findByLocation(String location) {
+        long startedAt = allow(true);
+        try {
+            List<Contact> contacts = delegate.findByLocation(location);
+            record(System.currentTimeMillis() - startedAt, null);
+            return contacts;
+        } catch (RuntimeException exception) {
+            record(System.currentTimeMillis() - startedAt, exception);
+            throw exception;
+        }
+    }
+
+    /**
+     * Export of all contacts is slow by nature, so only its failures are
+     * counted.
+     */
+    @Override
+    public void findAll(String cursor, ContactCallback callback) {
+        allow(false);
+        try {
+            delegate.findAll(cursor, callback);
+            record(0, null);
+        } catch (RuntimeException exception) {
+            record(0, exception);
+            throw exception;
+        }
+    }
+
+    @ManagedAttribute(description = "State of circuit.")
+    public synchronized String getState() {
+        return state.name();
+    }
+
+    @ManagedAttribute(description = "Number of times, when circuit was opened.")
+    public long getOpened() {
+        return opened.get();
+    }
+
+    @ManagedAttribute(description = "Number of calls, that were rejected.")
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    @ManagedOperation(description = "Closes circuit.")
+    public synchronized void reset() {
+        close();
+    }
+
+    /**
+     * Checks that call is allowed.
+     * 
+     * @param trial
+     *            <code>true</code>, if call can be a trial call.
+     * 
+     * @return the time, when call was started.
+     */
+    private synchronized long allow(boolean trial) {
+        long now = System.currentTimeMillis();
+
+        if (state == State.HALF_OPEN && now - trialStartedAt >= slowCallTime) {
+            LOGGER.warn("Trial call is running for {} ms.", now
+                    - trialStartedAt);
+            open(now);
+        }
+
+        if (trial && state == State.OPEN && now - openedAt >= openTime) {
+            LOGGER.info("Try to close circuit.");
+            state = State.HALF_OPEN;
+            trialThread = Thread.currentThread();
+            trialStartedAt = now;
+            return now;
+        }
+
+        if (state != State.CLOSED) {
+            rejected.incrementAndGet();
+            throw new DirectoryBusyException(
+                    "Directory service is not available.");
+        }
+
+        return now;
+    }
+
+    /**
+     * Records result of call.
+     * 
+     * @param duration
+     *            the duration of call in milliseconds.
+     * @param exception
+     *            the exception thrown by call or <code>null</code>, if call
+     *            succeeded.
+     */
+    private synchronized void record(long duration, RuntimeException exception) {
+        if (exception instanceof DirectoryBusyException) {
+            rejected.incrementAndGet();
+            if (state == State.HALF_OPEN
+                    && Thread.currentThread() == trialThread) {
+                LOGGER.info("Trial call could not start.");
+                state = State.OPEN;
+                trialThread = null;
+            }
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean failed = exception instanceof NamingException
+                || duration >= slowCallTime;
+
+        if (state == State.HALF_OPEN) {
+            if (Thread.currentThread() != trialThread) {
+                return;
+            }
+
+            if (failed) {
+                open(now);
+            } else {
+                LOGGER.info("Circuit is closed.");
+                close();
+            }
+            return;
+        }
+
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (calls == window.length) {
+            failures -= window[position] ? 1 : 0;
+        } else {
+            ++calls;
+        }
+        window[position] = failed;
+        failures += failed ? 1 : 0;
+        position = (position + 1) % window.length;
+
+        if (calls >= minCalls && failures >= failureRate * calls) {
+            open(now);
+        }
+    }
+
+    private void open(long now) {
+        LOGGER.warn("Circuit is opened for {} ms.", openTime);
+
+        state = State.OPEN;
+        openedAt = now;
+        trialThread = null;
+        opened.incrementAndGet();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        trialThread = null;
+        position = 0;
+        calls = 0;
+        failures = 0;
+    }
+
+}
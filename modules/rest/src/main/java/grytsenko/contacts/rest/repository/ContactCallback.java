@@ -0,0 +1,15 @@
+package grytsenko.contacts.rest.repository;
+
+import grytsenko.contacts.common.model.Contact;
+
+/**
+ * Receives contacts one by one, as they are found.
+ */
+public interface ContactCallback {
+
+    /**
+     * Handles the next found contact.
+     */
+    void handle(Contact contact);
+
+}
@@ -17,9 +17,27 @@ public interface ContactsRepository {
      */
     Contact findByUsername(String username);
 
+    /**
+     * Finds location of concrete person.
+     * 
+     * @return the found location or <code>null</code> if person was not
+     *         found.
+     */
+    String findLocationByUsername(String username);
+
     /**
      * Finds all contacts of people from one location.
      */
     List<Contact> findByLocation(String location);
 
+    /**
+     * Finds contacts of all people and passes them to callback one by one,
+     * ordered by usernames ignoring case.
+     * 
+     * @param cursor
+     *            the username, after which contacts are passed, or
+     *            <code>null</code> to pass all contacts.
+     */
+    void findAll(String cursor, ContactCallback callback);
+
 }
\ No newline at end of file
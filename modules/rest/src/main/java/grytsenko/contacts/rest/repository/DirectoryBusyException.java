@@ -0,0 +1,23 @@
+package grytsenko.contacts.rest.repository;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if directory service is busy with other operations and operation
+ * could not be started in time.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class DirectoryBusyException extends RuntimeException {
+
+    private static final long serialVersionUID = 4630187258720734172L;
+
+    public DirectoryBusyException() {
+        super("Directory service is busy.");
+    }
+
+    public DirectoryBusyException(String message) {
+        super(message);
+    }
+
+}
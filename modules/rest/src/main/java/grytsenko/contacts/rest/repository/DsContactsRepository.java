@@ -1,24 +1,36 @@
 package grytsenko.contacts.rest.repository;
 
 import static grytsenko.contacts.common.util.StringUtils.digitsOnly;
-import static java.text.MessageFormat.format;
+import static grytsenko.contacts.rest.util.HashUtils.contentHash;
 import grytsenko.contacts.common.model.Contact;
 import grytsenko.contacts.common.util.StringUtils;
+import grytsenko.contacts.rest.util.FilterTemplate;
 
 import java.util.List;
 
+import javax.annotation.PostConstruct;
+import javax.naming.NameClassPair;
 import javax.naming.NamingException;
 import javax.naming.directory.Attribute;
 import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
 import javax.naming.directory.SearchControls;
+import javax.naming.directory.SearchResult;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.ldap.control.PagedResultsCookie;
+import org.springframework.ldap.control.PagedResultsDirContextProcessor;
+import org.springframework.ldap.control.SortControlDirContextProcessor;
 import org.springframework.ldap.core.AttributesMapper;
+import org.springframework.ldap.core.ContextSource;
 import org.springframework.ldap.core.LdapTemplate;
-import org.springframework.ldap.core.support.LdapContextSource;
+import org.springframework.ldap.core.NameClassPairCallbackHandler;
+import org.springframework.ldap.core.support.AggregateDirContextProcessor;
+import org.springframework.ldap.core.support.SingleContextSource;
+import org.springframework.ldap.support.LdapUtils;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -31,7 +43,7 @@ public class DsContactsRepository implements ContactsRepository {
             .getLogger(DsContactsRepository.class);
 
     @Autowired
-    protected LdapContextSource ldapContextSource;
+    protected ContextSource ldapContextSource;
 
     @Value("#{ldapProperties['ldap.users']}")
     protected String usersGroup;
@@ -40,6 +52,12 @@ public class DsContactsRepository implements ContactsRepository {
     protected String filterByUsernameTemplate;
     @Value("#{ldapProperties['ldap.users.filter.location']}")
     protected String filterByLocationTemplate;
+    @Value("#{ldapProperties['ldap.users.filter.all']}")
+    protected String filterAll;
+    @Value("#{ldapProperties['ldap.users.filter.after']}")
+    protected String filterAfterTemplate;
+    @Value("#{ldapProperties['ldap.users.pageSize']}")
+    protected int pageSize;
 
     @Value("#{ldapProperties['ldap.user.username']}")
     protected String usernameAttr;
@@ -59,11 +77,22 @@ public class DsContactsRepository implements ContactsRepository {
     @Value("#{ldapProperties['ldap.user.updatedAt']}")
     protected String updatedAtAttr;
 
+    private FilterTemplate filterByUsername;
+    private FilterTemplate filterByLocation;
+    private FilterTemplate filterAfter;
+
+    @PostConstruct
+    void init() {
+        filterByUsername = new FilterTemplate(filterByUsernameTemplate);
+        filterByLocation = new FilterTemplate(filterByLocationTemplate);
+        filterAfter = new FilterTemplate(filterAfterTemplate);
+    }
+
     @Override
     public Contact findByUsername(String username) {
         LOGGER.debug("Search contact for {}.", username);
 
-        String filter = format(filterByUsernameTemplate, username);
+        String filter = filterByUsername.format(username);
         List<Contact> contacts = findUsingFilter(filter);
 
         if (contacts.isEmpty()) {
@@ -74,31 +103,127 @@ public class DsContactsRepository implements ContactsRepository {
         return contacts.get(0);
     }
 
+    @Override
+    public String findLocationByUsername(String username) {
+        LOGGER.debug("Search location of {}.", username);
+
+        String filter = filterByUsername.format(username);
+
+        LdapTemplate template = new LdapTemplate(ldapContextSource);
+
+        String[] attrs = new String[] { locationAttr };
+        @SuppressWarnings("unchecked")
+        List<String> locations = template.search(usersGroup, filter,
+                SearchControls.ONELEVEL_SCOPE, attrs, new LocationMapper());
+
+        if (locations.isEmpty()) {
+            LOGGER.debug("Location of {} was not found.", username);
+            return null;
+        }
+
+        return locations.get(0);
+    }
+
     @Override
     public List<Contact> findByLocation(String location) {
         LOGGER.debug("Search contacts of people from {}.", location);
 
-        String filter = format(filterByLocationTemplate, location);
+        String filter = filterByLocation.format(location);
         return findUsingFilter(filter);
     }
 
+    /**
+     * Contacts are sorted by directory service (RFC 2891) and are not kept in
+     * memory. Contacts after cursor are selected by filter, so they are
+     * compared by the same ordering rule, that is used for sorting. Contacts
+     * are requested by pages (RFC 2696) through one connection.
+     */
+    @Override
+    public void findAll(String cursor, final ContactCallback callback) {
+        LOGGER.debug("Search contacts of all people after {}.", cursor);
+
+        String filter = cursor == null ? filterAll : filterAfter
+                .format(cursor);
+
+        SearchControls controls = new SearchControls();
+        controls.setSearchScope(SearchControls.ONELEVEL_SCOPE);
+        controls.setReturningAttributes(contactAttrs());
+
+        final ContactMapper mapper = new ContactMapper();
+        NameClassPairCallbackHandler handler = new NameClassPairCallbackHandler() {
+            @Override
+            public void handleNameClassPair(NameClassPair pair) {
+                try {
+                    callback.handle(mapper.mapFromAttributes(((SearchResult) pair)
+                            .getAttributes()));
+                } catch (NamingException exception) {
+                    throw LdapUtils.convertLdapException(exception);
+                }
+            }
+        };
+
+        DirContext context = ldapContextSource.getReadOnlyContext();
+        SingleContextSource contextSource = new SingleContextSource(context);
+        try {
+            LdapTemplate template = new LdapTemplate(contextSource);
+
+            PagedResultsCookie cookie = null;
+            do {
+                PagedResultsDirContextProcessor pages = new PagedResultsDirContextProcessor(
+                        pageSize, cookie);
+                AggregateDirContextProcessor processor = new AggregateDirContextProcessor();
+                processor.addDirContextProcessor(new SortControlDirContextProcessor(
+                        usernameAttr));
+                processor.addDirContextProcessor(pages);
+
+                template.search(usersGroup, filter, controls, handler,
+                        processor);
+
+                cookie = pages.getCookie();
+            } while (cookie != null && cookie.getCookie() != null);
+        } finally {
+            contextSource.destroy();
+        }
+    }
+
+    private String[] contactAttrs() {
+        return new String[] { usernameAttr, firstnameAttr, lastnameAttr,
+                photoUrlAttr, mailAttr, phoneAttr, locationAttr, updatedAtAttr };
+    }
+
     private List<Contact> findUsingFilter(String filter) {
         LOGGER.debug("Find contacts using filter '{}'.", filter);
 
         LdapTemplate template = new LdapTemplate(ldapContextSource);
 
-        String[] attrs = new String[] { usernameAttr, firstnameAttr,
-                lastnameAttr, photoUrlAttr, mailAttr, phoneAttr, locationAttr,
-                updatedAtAttr };
         @SuppressWarnings("unchecked")
         List<Contact> contacts = template.search(usersGroup, filter,
-                SearchControls.ONELEVEL_SCOPE, attrs, new ContactMapper());
+                SearchControls.ONELEVEL_SCOPE, contactAttrs(),
+                new ContactMapper());
 
         LOGGER.debug("Found {} contacts.", contacts.size());
 
         return contacts;
     }
 
+    /**
+     * Returns location, that is the only requested attribute.
+     */
+    private class LocationMapper implements AttributesMapper {
+
+        @Override
+        public String mapFromAttributes(Attributes attrs)
+                throws NamingException {
+            Attribute attr = attrs.get(locationAttr);
+            if (attr == null) {
+                return StringUtils.EMPTY;
+            }
+
+            return (String) attr.get();
+        }
+
+    }
+
     /**
      * Factory, that creates a contact using data from DS.
      */
@@ -122,6 +247,7 @@ public class DsContactsRepository implements ContactsRepository {
             contact.setLocation(asString(locationAttr, attrs));
 
             contact.setVersion(asString(updatedAtAttr, attrs));
+            contact.setHash(contentHash(contact));
 
             return contact;
         }
@@ -0,0 +1,196 @@
+package grytsenko.contacts.rest.repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.directory.DirContext;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.ldap.core.DistinguishedName;
+import org.springframework.ldap.core.support.BaseLdapPathContextSource;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Limits the number of concurrent operations in directory service.
+ * 
+ * <p>
+ * Each context holds a permit until it is closed. Both searches and binds of
+ * users get contexts from this source, so they share the same limit. If
+ * permit is not available in time, then {@link DirectoryBusyException} is
+ * thrown.
+ */
+@ManagedResource(description = "Limit of concurrent operations in directory service.")
+public class LimitedContextSource implements BaseLdapPathContextSource {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LimitedContextSource.class);
+
+    private BaseLdapPathContextSource delegate;
+
+    private int maxOperations;
+    private long timeout = 3000L;
+
+    private Semaphore permits;
+
+    private final AtomicLong rejected = new AtomicLong();
+
+    public LimitedContextSource() {
+        setMaxOperations(50);
+    }
+
+    /**
+     * Sets source of contexts.
+     */
+    public void setDelegate(BaseLdapPathContextSource delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Sets the maximum number of concurrent operations.
+     */
+    public void setMaxOperations(int maxOperations) {
+        this.maxOperations = maxOperations;
+        permits = new Semaphore(maxOperations, true);
+    }
+
+    /**
+     * Sets time in milliseconds, while operation waits for permit.
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public DirContext getReadOnlyContext() {
+        acquire();
+        try {
+            return releasing(delegate.getReadOnlyContext());
+        } catch (RuntimeException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    @Override
+    public DirContext getReadWriteContext() {
+        acquire();
+        try {
+            return releasing(delegate.getReadWriteContext());
+        } catch (RuntimeException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    @Override
+    public DirContext getContext(String principal, String credentials) {
+        acquire();
+        try {
+            return releasing(delegate.getContext(principal, credentials));
+        } catch (RuntimeException exception) {
+            permits.release();
+            throw exception;
+        }
+    }
+
+    @Override
+    public DistinguishedName getBaseLdapPath() {
+        return delegate.getBaseLdapPath();
+    }
+
+    @Override
+    public String getBaseLdapPathAsString() {
+        return delegate.getBaseLdapPathAsString();
+    }
+
+    @ManagedAttribute(description = "Maximum number of concurrent operations.")
+    public int getMaxOperations() {
+        return maxOperations;
+    }
+
+    @ManagedAttribute(description = "Number of operations in progress.")
+    public int getActive() {
+        return maxOperations - permits.availablePermits();
+    }
+
+    @ManagedAttribute(description = "Number of operations, that wait for permit.")
+    public int getWaiting() {
+        return permits.getQueueLength();
+    }
+
+    @ManagedAttribute(description = "Number of operations, that were rejected.")
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    private void acquire() {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+
+        if (!acquired) {
+            rejected.incrementAndGet();
+            LOGGER.warn("Directory service is busy.");
+            throw new DirectoryBusyException();
+        }
+    }
+
+    /**
+     * Returns context, that releases permit when it is closed.
+     */
+    private DirContext releasing(DirContext context) {
+        Class<?>[] interfaces = ClassUtils.getAllInterfaces(context);
+        return (DirContext) Proxy.newProxyInstance(getClass()
+                .getClassLoader(), interfaces, new ReleasingHandler(context));
+    }
+
+    /**
+     * Releases permit once, when context is closed.
+     */
+    private class ReleasingHandler implements InvocationHandler {
+
+        private final DirContext context;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        ReleasingHandler(DirContext context) {
+            this.context = context;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args)
+                throws Throwable {
+            if (method.getName().equals("close")
+                    && method.getParameterTypes().length == 0) {
+                try {
+                    context.close();
+                } finally {
+                    if (released.compareAndSet(false, true)) {
+                        permits.release();
+                    }
+                }
+                return null;
+            }
+
+            try {
+                return method.invoke(context, args);
+            } catch (InvocationTargetException exception) {
+                throw exception.getTargetException();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,28 @@
+package grytsenko.contacts.rest.service;
+
+import java.util.Arrays;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Checks rights of administrators.
+ */
+@Service
+public class AdminService {
+
+    @Value("#{adminProperties['admin.users']}")
+    String adminUsers;
+
+    /**
+     * Checks that user is listed in <code>admin.properties</code>.
+     */
+    public boolean isAdmin(String username) {
+        if (adminUsers == null) {
+            return false;
+        }
+
+        return Arrays.asList(adminUsers.split("\\s*,\\s*")).contains(username);
+    }
+
+}
@@ -0,0 +1,196 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Changes;
+import grytsenko.contacts.common.util.StringUtils;
+import grytsenko.contacts.rest.util.HashUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tracks changes of groups of users.
+ * 
+ * <p>
+ * Each user has watermark, that is calculated from all groups of user, the
+ * same groups that are synchronized by clients. If client does not wait for
+ * changes, then watermark is calculated once per request. Watermarks of
+ * users, that have clients waiting for changes, are refreshed periodically,
+ * while clients wait. Contacts of groups are taken from caches, so directory
+ * service is queried once per location, whatever the number of waiting
+ * clients.
+ */
+@Service
+public class ChangesService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ChangesService.class);
+
+    /**
+     * Interval between refreshes of watermarks.
+     */
+    static final long REFRESH_INTERVAL = 30L * 1000L;
+
+    /**
+     * The maximum time, that client can wait for changes.
+     */
+    public static final long MAX_WAIT = 60L * 1000L;
+
+    @Autowired
+    SearchContactsService searchContactsService;
+    @Autowired
+    GroupsService groupsService;
+
+    private final Map<String, String> watermarks = new HashMap<String, String>();
+    private final Map<String, Integer> waiters = new HashMap<String, Integer>();
+
+    /**
+     * Waits for changes in groups of user.
+     * 
+     * @param username
+     *            the name of user.
+     * @param watermark
+     *            the watermark, that is known to user, or <code>null</code>
+     *            if user does not know any watermark.
+     * @param wait
+     *            the maximum time to wait in milliseconds.
+     * 
+     * @return the actual watermark of groups of user.
+     */
+    public Changes waitForChanges(String username, String watermark, long wait)
+            throws InterruptedException {
+        if (StringUtils.isNullOrEmpty(username)) {
+            throw new IllegalArgumentException("User not defined.");
+        }
+
+        String location = searchContactsService.findLocationOfUser(username);
+        String actualWatermark = getWatermark(username);
+
+        if (wait > 0 && actualWatermark.equals(watermark)) {
+            actualWatermark = waitForWatermark(username, actualWatermark,
+                    System.currentTimeMillis() + Math.min(wait, MAX_WAIT));
+        }
+
+        LOGGER.debug("Watermark of groups of {} is {}.", username,
+                actualWatermark);
+
+        Changes changes = new Changes();
+        changes.setLocation(location);
+        changes.setWatermark(actualWatermark);
+        changes.setChanged(!actualWatermark.equals(watermark));
+        return changes;
+    }
+
+    /**
+     * Returns watermark of groups of user.
+     * 
+     * <p>
+     * If user is tracked, then the last refreshed watermark is returned,
+     * otherwise watermark is calculated.
+     */
+    private String getWatermark(String username) {
+        synchronized (this) {
+            String watermark = watermarks.get(username);
+            if (watermark != null) {
+                return watermark;
+            }
+        }
+
+        return calculateWatermark(username);
+    }
+
+    /**
+     * Tracks user, while client waits for changes of watermark.
+     * 
+     * @return the actual watermark of groups of user.
+     */
+    private synchronized String waitForWatermark(String username,
+            String watermark, long waitUntil) throws InterruptedException {
+        Integer count = waiters.get(username);
+        if (count == null) {
+            LOGGER.debug("Start tracking of {}.", username);
+            count = 0;
+            watermarks.put(username, watermark);
+        }
+        waiters.put(username, count + 1);
+
+        try {
+            String actualWatermark = watermarks.get(username);
+            while (actualWatermark.equals(watermark)) {
+                long timeout = waitUntil - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    break;
+                }
+
+                wait(timeout);
+                actualWatermark = watermarks.get(username);
+            }
+            return actualWatermark;
+        } finally {
+            count = waiters.get(username) - 1;
+            if (count > 0) {
+                waiters.put(username, count);
+            } else {
+                LOGGER.debug("Stop tracking of {}.", username);
+                waiters.remove(username);
+                watermarks.remove(username);
+            }
+        }
+    }
+
+    /**
+     * Refreshes watermarks of tracked users and wakes up clients, that wait
+     * for changes.
+     */
+    @Scheduled(fixedDelay = REFRESH_INTERVAL)
+    public void refresh() {
+        List<String> usernames;
+        synchronized (this) {
+            usernames = new ArrayList<String>(waiters.keySet());
+        }
+
+        Map<String, String> refreshedWatermarks = new HashMap<String, String>();
+        for (String username : usernames) {
+            try {
+                refreshedWatermarks.put(username, calculateWatermark(username));
+            } catch (RuntimeException exception) {
+                LOGGER.warn("Could not refresh watermark of {}.", username,
+                        exception);
+            }
+        }
+
+        synchronized (this) {
+            boolean changed = false;
+            for (Map.Entry<String, String> entry : refreshedWatermarks
+                    .entrySet()) {
+                String username = entry.getKey();
+                if (!waiters.containsKey(username)) {
+                    continue;
+                }
+
+                String previous = watermarks.put(username, entry.getValue());
+                if (!entry.getValue().equals(previous)) {
+                    LOGGER.debug("Groups of {} were changed.", username);
+                    changed = true;
+                }
+            }
+
+            if (changed) {
+                notifyAll();
+            }
+        }
+    }
+
+    private String calculateWatermark(String username) {
+        UserGroups groups = groupsService.findGroupsOfUser(username);
+        return HashUtils.watermark(groups.getGroups(), groups.getContacts());
+    }
+
+}
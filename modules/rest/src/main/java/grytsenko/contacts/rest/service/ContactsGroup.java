@@ -0,0 +1,30 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.List;
+
+/**
+ * Group of contacts, that is synchronized by clients.
+ * 
+ * <p>
+ * All beans of this type are returned to clients together.
+ */
+public interface ContactsGroup {
+
+    /**
+     * Returns the unique name of group.
+     */
+    String getName();
+
+    /**
+     * Returns the default title of group.
+     */
+    String getTitle();
+
+    /**
+     * Finds contacts, that are included in group for user.
+     */
+    List<Contact> findContacts(String username);
+
+}
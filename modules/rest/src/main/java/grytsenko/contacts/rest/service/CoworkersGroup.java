@@ -0,0 +1,35 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Group of people from one location with user.
+ */
+@Component
+public class CoworkersGroup implements ContactsGroup {
+
+    @Autowired
+    SearchContactsService searchContactsService;
+
+    @Override
+    public String getName() {
+        return "coworkers";
+    }
+
+    @Override
+    public String getTitle() {
+        return "Coworkers";
+    }
+
+    @Override
+    public List<Contact> findContacts(String username) {
+        String location = searchContactsService.findLocationOfUser(username);
+        return searchContactsService.findByLocation(location);
+    }
+
+}
@@ -0,0 +1,343 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Location;
+import grytsenko.contacts.common.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Immutable copy of directory: hierarchy of locations and contacts of each
+ * location serialized to JSON.
+ * 
+ * <p>
+ * Snapshot is never changed after it was built, so it can be read by any
+ * number of threads without locks. New snapshot is built to apply changes.
+ */
+public final class DirectorySnapshot {
+
+    public static final String SEPARATOR = "/";
+
+    private final long version;
+    private final long builtAt;
+
+    private final Node root;
+
+    private DirectorySnapshot(long version, Node root) {
+        this.version = version;
+        this.builtAt = System.currentTimeMillis();
+        this.root = root;
+    }
+
+    /**
+     * Builds snapshot from contacts. If there are several contacts with the
+     * same username, then the first of them is used.
+     * 
+     * @param version
+     *            the version of snapshot.
+     * @param contacts
+     *            the contacts, that should not be changed later.
+     * @param mapper
+     *            the mapper to serialize contacts.
+     */
+    public static DirectorySnapshot build(long version,
+            Iterable<Contact> contacts, ObjectMapper mapper)
+            throws IOException {
+        Set<String> usernames = new HashSet<String>();
+        Node root = new Node(StringUtils.EMPTY, StringUtils.EMPTY);
+        for (Contact contact : contacts) {
+            if (usernames.add(contact.getUsername())) {
+                root.add(normalize(contact.getLocation()), contact);
+            }
+        }
+        root.complete(mapper);
+
+        return new DirectorySnapshot(version, root);
+    }
+
+    /**
+     * Returns the version, that is increased with each new snapshot.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Returns the time, when snapshot was built.
+     */
+    public long getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * Returns the number of people.
+     */
+    public int size() {
+        return root.count;
+    }
+
+    /**
+     * Returns location with all nested locations.
+     * 
+     * @return the found location or <code>null</code>, if there are no people
+     *         from this location.
+     */
+    public Location getLocation(String path) {
+        Node node = root.find(normalize(path));
+        return node != null ? node.location : null;
+    }
+
+    /**
+     * Finds people from the given locations and all nested locations.
+     * 
+     * @return contacts, each person is returned once.
+     */
+    public List<Contact> findByPaths(Collection<String> paths) {
+        List<Contact> found = new ArrayList<Contact>();
+        Set<String> usernames = new HashSet<String>();
+        for (Node node : findNodes(paths)) {
+            node.collect(found, usernames);
+        }
+        return found;
+    }
+
+    /**
+     * Returns the same contacts as {@link #findByPaths(Collection)}, but
+     * already serialized as JSON array.
+     */
+    public byte[] toJson(Collection<String> paths) {
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        json.write('[');
+        boolean first = true;
+        Set<String> usernames = new HashSet<String>();
+        for (Node node : findNodes(paths)) {
+            first = node.writeJson(json, first, usernames);
+        }
+        json.write(']');
+        return json.toByteArray();
+    }
+
+    /**
+     * Finds locations, skipping locations, that are nested in other found
+     * locations.
+     * 
+     * <p>
+     * Paths are sorted, so each location is checked after all locations, in
+     * which it is nested. Other paths can be sorted between them (for
+     * example, <code>Kyiv Obl</code> between <code>Kyiv</code> and
+     * <code>Kyiv/Podil</code>), so location is compared with all found
+     * locations.
+     */
+    private List<Node> findNodes(Collection<String> paths) {
+        Set<String> sortedPaths = new TreeSet<String>();
+        for (String path : paths) {
+            sortedPaths.add(normalize(path));
+        }
+
+        List<String> foundPaths = new ArrayList<String>();
+        List<Node> nodes = new ArrayList<Node>();
+        for (String path : sortedPaths) {
+            if (isNestedInAny(path, foundPaths)) {
+                continue;
+            }
+
+            Node node = root.find(path);
+            if (node != null) {
+                foundPaths.add(path);
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+
+    private static boolean isNestedInAny(String path,
+            Collection<String> parentPaths) {
+        for (String parentPath : parentPaths) {
+            if (isNested(path, parentPath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes empty parts and spaces around parts of path.
+     */
+    public static String normalize(String path) {
+        if (path == null) {
+            return StringUtils.EMPTY;
+        }
+
+        StringBuilder normalized = new StringBuilder();
+        for (String part : path.split(SEPARATOR)) {
+            String trimmed = part.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+
+            if (normalized.length() > 0) {
+                normalized.append(SEPARATOR);
+            }
+            normalized.append(trimmed);
+        }
+        return normalized.toString();
+    }
+
+    /**
+     * Checks that location is nested in other location. Both paths should be
+     * normalized.
+     */
+    public static boolean isNested(String path, String parentPath) {
+        return parentPath.isEmpty() || path.equals(parentPath)
+                || path.startsWith(parentPath + SEPARATOR);
+    }
+
+    /**
+     * Location in snapshot.
+     * 
+     * <p>
+     * Nodes are changed only while snapshot is built.
+     */
+    private static class Node {
+
+        final String name;
+        final String path;
+
+        final Map<String, Node> children = new TreeMap<String, Node>();
+        final List<Contact> contacts = new ArrayList<Contact>();
+
+        int count;
+        Location location;
+        List<byte[]> jsons;
+
+        Node(String name, String path) {
+            this.name = name;
+            this.path = path;
+        }
+
+        /**
+         * Adds person to nested location.
+         */
+        void add(String contactPath, Contact contact) {
+            Node node = this;
+            if (!contactPath.isEmpty()) {
+                for (String part : contactPath.split(SEPARATOR)) {
+                    node = node.child(part);
+                }
+            }
+            node.contacts.add(contact);
+        }
+
+        Node child(String childName) {
+            Node child = children.get(childName);
+            if (child == null) {
+                String childPath = path.isEmpty() ? childName : path
+                        + SEPARATOR + childName;
+                child = new Node(childName, childPath);
+                children.put(childName, child);
+            }
+            return child;
+        }
+
+        /**
+         * Counts people, creates model of location and serializes contacts,
+         * after all people were added.
+         */
+        void complete(ObjectMapper mapper) throws IOException {
+            count = contacts.size();
+
+            List<Location> childLocations = new ArrayList<Location>();
+            for (Node child : children.values()) {
+                child.complete(mapper);
+                count += child.count;
+                childLocations.add(child.location);
+            }
+
+            location = new Location();
+            location.setName(name);
+            location.setPath(path);
+            location.setCount(count);
+            location.setChildren(Collections.unmodifiableList(childLocations));
+
+            jsons = new ArrayList<byte[]>(contacts.size());
+            for (Contact contact : contacts) {
+                jsons.add(mapper.writeValueAsBytes(contact));
+            }
+        }
+
+        Node find(String nodePath) {
+            Node node = this;
+            if (!nodePath.isEmpty()) {
+                for (String part : nodePath.split(SEPARATOR)) {
+                    node = node.children.get(part);
+                    if (node == null) {
+                        return null;
+                    }
+                }
+            }
+            return node;
+        }
+
+        /**
+         * Collects people from this location and all nested locations.
+         * 
+         * @param usernames
+         *            the usernames of people, that were collected already
+         *            and are skipped.
+         */
+        void collect(List<Contact> found, Set<String> usernames) {
+            for (Contact contact : contacts) {
+                if (usernames.add(contact.getUsername())) {
+                    found.add(contact);
+                }
+            }
+            for (Node child : children.values()) {
+                child.collect(found, usernames);
+            }
+        }
+
+        /**
+         * Writes serialized people from this location and all nested
+         * locations, separating them by commas.
+         * 
+         * @param usernames
+         *            the usernames of people, that were written already and
+         *            are skipped.
+         * 
+         * @return <code>true</code> if nothing was written yet.
+         */
+        boolean writeJson(ByteArrayOutputStream out, boolean first,
+                Set<String> usernames) {
+            for (int i = 0; i < contacts.size(); ++i) {
+                if (!usernames.add(contacts.get(i).getUsername())) {
+                    continue;
+                }
+
+                if (!first) {
+                    out.write(',');
+                }
+                byte[] json = jsons.get(i);
+                out.write(json, 0, json.length);
+                first = false;
+            }
+            for (Node child : children.values()) {
+                first = child.writeJson(out, first, usernames);
+            }
+            return first;
+        }
+
+    }
+
+}
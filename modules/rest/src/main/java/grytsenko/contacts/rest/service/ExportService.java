@@ -0,0 +1,79 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.repository.ContactCallback;
+import grytsenko.contacts.rest.repository.ContactsRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Exports contacts for other systems.
+ */
+@Service
+public class ExportService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ExportService.class);
+
+    /**
+     * Orders usernames in the same way as directory service, that compares
+     * them ignoring case.
+     */
+    private static final Comparator<String> USERNAMES_ORDER = String.CASE_INSENSITIVE_ORDER;
+
+    @Autowired
+    ContactsRepository contactsRepository;
+    @Autowired
+    LocationsCache locationsCache;
+
+    /**
+     * Passes contacts to callback one by one, ordered by usernames ignoring
+     * case.
+     * 
+     * <p>
+     * Contacts of one location are taken from cache, if they are cached.
+     * Contacts of all people are streamed from directory service.
+     * 
+     * @param location
+     *            the location of people or <code>null</code> to export all
+     *            people.
+     * @param cursor
+     *            the username, after which contacts are exported, or
+     *            <code>null</code> to export all contacts.
+     */
+    public void export(String location, String cursor, ContactCallback callback) {
+        if (location == null) {
+            LOGGER.debug("Export all contacts after {}.", cursor);
+            contactsRepository.findAll(cursor, callback);
+            return;
+        }
+
+        LOGGER.debug("Export contacts from {} after {}.", location, cursor);
+
+        List<Contact> contacts = new ArrayList<Contact>(
+                locationsCache.findByLocation(location));
+        Collections.sort(contacts, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact first, Contact second) {
+                return USERNAMES_ORDER.compare(first.getUsername(),
+                        second.getUsername());
+            }
+        });
+
+        for (Contact contact : contacts) {
+            if (cursor == null
+                    || USERNAMES_ORDER.compare(contact.getUsername(), cursor) > 0) {
+                callback.handle(contact);
+            }
+        }
+    }
+
+}
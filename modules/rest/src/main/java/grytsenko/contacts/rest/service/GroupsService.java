@@ -0,0 +1,66 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+import grytsenko.contacts.common.util.StringUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Collects groups of contacts for user.
+ */
+@Service
+public class GroupsService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(GroupsService.class);
+
+    @Autowired
+    List<ContactsGroup> groups;
+
+    /**
+     * Finds all groups of user.
+     * 
+     * @return the groups and contacts from these groups.
+     */
+    public UserGroups findGroupsOfUser(String username) {
+        if (StringUtils.isNullOrEmpty(username)) {
+            throw new IllegalArgumentException("User not defined.");
+        }
+
+        List<Group> foundGroups = new ArrayList<Group>(groups.size());
+        Map<String, Contact> foundContacts = new LinkedHashMap<String, Contact>();
+
+        for (ContactsGroup group : groups) {
+            LOGGER.debug("Search contacts of {} for {}.", group.getName(),
+                    username);
+
+            List<Contact> contacts = group.findContacts(username);
+            List<String> members = new ArrayList<String>(contacts.size());
+            for (Contact contact : contacts) {
+                members.add(contact.getUsername());
+                foundContacts.put(contact.getUsername(), contact);
+            }
+
+            Group foundGroup = new Group();
+            foundGroup.setName(group.getName());
+            foundGroup.setTitle(group.getTitle());
+            foundGroup.setMembers(members);
+            foundGroups.add(foundGroup);
+        }
+
+        LOGGER.debug("Found {} groups with {} contacts.", foundGroups.size(),
+                foundContacts.size());
+
+        return new UserGroups(foundGroups, foundContacts.values());
+    }
+
+}
@@ -0,0 +1,153 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Location;
+import grytsenko.contacts.rest.repository.ContactCallback;
+import grytsenko.contacts.rest.repository.ContactsRepository;
+import grytsenko.contacts.rest.repository.DirectoryBusyException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Index of people by hierarchy of locations.
+ * 
+ * <p>
+ * Locations are paths, parts of which are separated by slashes, for example
+ * <code>Kyiv/Podil</code>. Index is built from all contacts in one pass over
+ * directory service and is rebuilt periodically. The number of people is
+ * precomputed for each location.
+ * 
+ * <p>
+ * Each rebuild publishes new {@link DirectorySnapshot}, readers never take
+ * locks and see either the previous or the new snapshot. If the first index
+ * could not be built, then requests fail at once until the next scheduled
+ * rebuild, so they do not repeat the pass over directory service.
+ */
+@Service
+public class LocationIndex {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LocationIndex.class);
+
+    public static final String SEPARATOR = DirectorySnapshot.SEPARATOR;
+
+    /**
+     * Interval between rebuilds of index.
+     */
+    static final long REBUILD_INTERVAL = 10L * 60L * 1000L;
+
+    @Autowired
+    ContactsRepository contactsRepository;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicReference<DirectorySnapshot> snapshot = new AtomicReference<DirectorySnapshot>();
+    private volatile boolean failed;
+
+    /**
+     * Finds people from the given locations and all nested locations.
+     * 
+     * @return contacts, each person is returned once.
+     */
+    public List<Contact> findByPaths(Collection<String> paths) {
+        List<Contact> found = getSnapshot().findByPaths(paths);
+        LOGGER.debug("Found {} people from {}.", found.size(), paths);
+        return found;
+    }
+
+    /**
+     * Returns location with all nested locations.
+     * 
+     * @return the found location or <code>null</code>, if there are no people
+     *         from this location.
+     */
+    public Location getLocation(String path) {
+        return getSnapshot().getLocation(path);
+    }
+
+    /**
+     * Returns the current snapshot, that should be used, when several
+     * consistent reads are needed.
+     * 
+     * @throws DirectoryBusyException
+     *             if index could not be built.
+     */
+    public DirectorySnapshot getSnapshot() {
+        DirectorySnapshot current = snapshot.get();
+        if (current == null && !failed) {
+            current = buildIfAbsent();
+        }
+
+        if (current == null) {
+            throw new DirectoryBusyException(
+                    "Index of locations is not available.");
+        }
+        return current;
+    }
+
+    /**
+     * Builds the first index, if it was not built yet by other thread, that
+     * held the lock, and the last build did not fail.
+     */
+    private synchronized DirectorySnapshot buildIfAbsent() {
+        DirectorySnapshot current = snapshot.get();
+        if (current == null && !failed) {
+            rebuild();
+            current = snapshot.get();
+        }
+        return current;
+    }
+
+    /**
+     * Rebuilds index. If directory service is not available, then the
+     * previous index is kept.
+     */
+    @Scheduled(fixedDelay = REBUILD_INTERVAL)
+    public synchronized void rebuild() {
+        long startedAt = System.currentTimeMillis();
+
+        final List<Contact> contacts = new ArrayList<Contact>();
+        try {
+            contactsRepository.findAll(null, new ContactCallback() {
+                @Override
+                public void handle(Contact contact) {
+                    contacts.add(contact);
+                }
+            });
+        } catch (RuntimeException exception) {
+            LOGGER.warn("Could not build index of locations.", exception);
+            failed = true;
+            return;
+        }
+
+        DirectorySnapshot previous = snapshot.get();
+        long version = previous != null ? previous.getVersion() + 1 : 1;
+
+        DirectorySnapshot built;
+        try {
+            built = DirectorySnapshot.build(version, contacts, mapper);
+        } catch (IOException exception) {
+            LOGGER.warn("Could not serialize contacts.", exception);
+            failed = true;
+            return;
+        }
+        snapshot.set(built);
+        failed = false;
+
+        LOGGER.info("Index {} of {} people was built in {} ms.", new Object[] {
+                version, built.size(),
+                System.currentTimeMillis() - startedAt });
+    }
+
+}
@@ -0,0 +1,166 @@
+package grytsenko.contacts.rest.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Counts requests of contacts by locations.
+ * 
+ * <p>
+ * Counters are saved to file periodically and are loaded at startup, so
+ * they are kept between deployments.
+ */
+public class LocationStats {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LocationStats.class);
+
+    private File file;
+
+    private final ConcurrentMap<String, AtomicLong> counters = new ConcurrentHashMap<String, AtomicLong>();
+
+    /**
+     * Sets file, where counters are saved.
+     */
+    public void setFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Counts request of contacts from location.
+     */
+    public void countRequest(String location) {
+        AtomicLong counter = counters.get(location);
+        if (counter == null) {
+            AtomicLong newCounter = new AtomicLong();
+            counter = counters.putIfAbsent(location, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    /**
+     * Returns the most requested locations.
+     * 
+     * @param num
+     *            the maximum number of returned locations.
+     */
+    public List<String> getTopLocations(int num) {
+        // Counters are copied, because they are changed while they are sorted.
+        final Map<String, Long> values = new HashMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().get());
+        }
+
+        List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>(
+                values.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> first,
+                    Map.Entry<String, Long> second) {
+                long firstValue = first.getValue();
+                long secondValue = second.getValue();
+                return firstValue > secondValue ? -1
+                        : (firstValue < secondValue ? 1 : 0);
+            }
+        });
+
+        List<String> locations = new ArrayList<String>();
+        for (Map.Entry<String, Long> entry : entries) {
+            if (locations.size() == num) {
+                break;
+            }
+            locations.add(entry.getKey());
+        }
+        return locations;
+    }
+
+    /**
+     * Loads counters from file.
+     */
+    @PostConstruct
+    public void load() {
+        Properties properties = new Properties();
+        try {
+            InputStream stream = new FileInputStream(file);
+            try {
+                properties.load(stream);
+            } finally {
+                stream.close();
+            }
+        } catch (FileNotFoundException exception) {
+            LOGGER.info("Statistics of locations not found.");
+            return;
+        } catch (IOException exception) {
+            LOGGER.warn("Could not load statistics of locations.", exception);
+            return;
+        }
+
+        for (String location : properties.stringPropertyNames()) {
+            try {
+                long value = Long.parseLong(properties.getProperty(location));
+                counters.put(location, new AtomicLong(value));
+            } catch (NumberFormatException exception) {
+                LOGGER.warn("Invalid counter for {}.", location);
+            }
+        }
+
+        LOGGER.info("Loaded statistics of {} locations.", counters.size());
+    }
+
+    /**
+     * Saves counters to file.
+     */
+    @Scheduled(fixedDelay = 5L * 60L * 1000L)
+    @PreDestroy
+    public void save() {
+        Properties properties = new Properties();
+        for (Map.Entry<String, AtomicLong> entry : counters.entrySet()) {
+            properties.setProperty(entry.getKey(),
+                    Long.toString(entry.getValue().get()));
+        }
+
+        File directory = file.getParentFile();
+        if (directory != null && !directory.isDirectory()
+                && !directory.mkdirs()) {
+            LOGGER.warn("Could not create directory {}.", directory);
+            return;
+        }
+
+        try {
+            OutputStream stream = new FileOutputStream(file);
+            try {
+                properties.store(stream, "Requests of contacts by locations.");
+            } finally {
+                stream.close();
+            }
+        } catch (IOException exception) {
+            LOGGER.warn("Could not save statistics of locations.", exception);
+        }
+    }
+
+}
@@ -0,0 +1,305 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.util.StringUtils;
+import grytsenko.contacts.rest.repository.ContactsRepository;
+import grytsenko.contacts.rest.util.ConsistentHash;
+import grytsenko.contacts.rest.util.Refresher;
+import grytsenko.contacts.rest.util.Staleness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Caches contacts by locations.
+ * 
+ * <p>
+ * In clustered mode each location is owned by one node, that is chosen using
+ * consistent hashing. Only owner caches and refreshes contacts of location,
+ * other nodes forward requests to owner. If owner is not available, contacts
+ * are loaded and cached locally and owner is not requested for some time.
+ * 
+ * <p>
+ * Settings of cluster can be overridden by parameters of servlet context, so
+ * several nodes can run in one web server.
+ * 
+ * <p>
+ * Expired contacts are kept for some time and are refreshed in background. If
+ * refresh fails or does not finish in time, then expired contacts are returned
+ * and marked as stale.
+ */
+@Service
+public class LocationsCache {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LocationsCache.class);
+
+    /**
+     * Header, that contains secret shared by nodes of cluster.
+     */
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    private static final String LOCATION_PATH = "/cluster/location.json?name={name}";
+
+    private static final int REPLICAS = 128;
+
+    @Autowired
+    ContactsRepository contactsRepository;
+    @Autowired
+    @Qualifier("refreshExecutor")
+    Executor refreshExecutor;
+
+    @Value("#{contextParameters['cluster.nodes'] ?: clusterProperties['cluster.nodes']}")
+    String nodes;
+    @Value("#{contextParameters['cluster.self'] ?: clusterProperties['cluster.self']}")
+    String self;
+    @Value("#{contextParameters['cluster.secret'] ?: clusterProperties['cluster.secret']}")
+    String secret;
+    @Value("#{contextParameters['cluster.timeout'] ?: clusterProperties['cluster.timeout']}")
+    int timeout;
+    @Value("#{contextParameters['cluster.downtime'] ?: clusterProperties['cluster.downtime']}")
+    long downtime;
+    @Value("#{clusterProperties['cluster.cache.ttl']}")
+    long ttl;
+    @Value("#{clusterProperties['cluster.cache.stale']}")
+    long stale;
+    @Value("#{clusterProperties['cluster.cache.refreshWait']}")
+    long refreshWait;
+
+    private Refresher<String, List<Contact>> refresher;
+
+    private ConsistentHash ring;
+    private RestTemplate restTemplate;
+
+    private final ConcurrentMap<String, CachedLocation> locations = new ConcurrentHashMap<String, CachedLocation>();
+    private final ConcurrentMap<String, Long> downNodes = new ConcurrentHashMap<String, Long>();
+
+    @PostConstruct
+    void init() {
+        refresher = new Refresher<String, List<Contact>>(refreshExecutor);
+
+        if (StringUtils.isNullOrEmpty(nodes)) {
+            LOGGER.info("Cluster is not configured.");
+            return;
+        }
+
+        List<String> urls = new ArrayList<String>();
+        for (String url : Arrays.asList(nodes.split(","))) {
+            if (!StringUtils.isNullOrEmpty(url.trim())) {
+                urls.add(url.trim());
+            }
+        }
+        if (!urls.contains(self)) {
+            throw new IllegalStateException("Node is not a part of cluster.");
+        }
+        if (StringUtils.isNullOrEmpty(secret)) {
+            throw new IllegalStateException("Secret of cluster not defined.");
+        }
+
+        ring = new ConsistentHash(urls, REPLICAS);
+
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(timeout);
+        requestFactory.setReadTimeout(timeout);
+        restTemplate = new RestTemplate(requestFactory);
+
+        LOGGER.info("Node {} is a part of cluster with {} nodes.", self,
+                urls.size());
+    }
+
+    /**
+     * Finds contacts of people from location.
+     */
+    public List<Contact> findByLocation(String location) {
+        if (ring == null) {
+            return findOwned(location);
+        }
+
+        String owner = ring.getNode(location);
+        if (owner.equals(self) || isDown(owner)) {
+            return findOwned(location);
+        }
+
+        LOGGER.debug("Forward search of contacts from {} to {}.", location,
+                owner);
+
+        try {
+            return forward(owner, location);
+        } catch (RestClientException exception) {
+            LOGGER.warn("Node {} is not available.", owner, exception);
+            downNodes.put(owner, System.currentTimeMillis() + downtime);
+            return findOwned(location);
+        }
+    }
+
+    /**
+     * Checks that location is owned by this node.
+     */
+    public boolean isOwned(String location) {
+        return ring == null || ring.getNode(location).equals(self);
+    }
+
+    /**
+     * Finds contacts of people from location, that is owned by this node.
+     */
+    public List<Contact> findOwned(final String location) {
+        long now = System.currentTimeMillis();
+
+        CachedLocation cached = locations.get(location);
+        if (cached != null && !cached.isExpired(now, ttl)) {
+            LOGGER.debug("Contacts from {} were found in cache.", location);
+            return cached.contacts;
+        }
+
+        if (cached == null) {
+            return load(location);
+        }
+
+        try {
+            return refresher.refresh(location, new Callable<List<Contact>>() {
+                @Override
+                public List<Contact> call() {
+                    return load(location);
+                }
+            }).get(refreshWait, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException exception) {
+            LOGGER.debug("Refresh of contacts from {} is slow.", location);
+        } catch (ExecutionException exception) {
+            LOGGER.warn("Could not refresh contacts from {}: {}", location,
+                    exception.getCause().getMessage());
+        } catch (RejectedExecutionException exception) {
+            LOGGER.warn("Could not start refresh of contacts from {}.",
+                    location);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+
+        Staleness.markStale(cached.loadedAt);
+        return cached.contacts;
+    }
+
+    /**
+     * Checks that secret is valid for this cluster.
+     */
+    public boolean isValidSecret(String secret) {
+        return ring != null && !StringUtils.isNullOrEmpty(secret)
+                && this.secret.equals(secret);
+    }
+
+    /**
+     * Removes locations, that are expired and are too old to be returned as
+     * stale.
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void evictExpired() {
+        long now = System.currentTimeMillis();
+
+        Iterator<Map.Entry<String, CachedLocation>> iterator = locations
+                .entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().isExpired(now, ttl + stale)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Checks that node did not respond recently, so requests to it should not
+     * wait for timeout.
+     */
+    private boolean isDown(String node) {
+        Long downUntil = downNodes.get(node);
+        if (downUntil == null) {
+            return false;
+        }
+
+        if (System.currentTimeMillis() < downUntil) {
+            return true;
+        }
+
+        downNodes.remove(node, downUntil);
+        return false;
+    }
+
+    /**
+     * Loads contacts from directory service and caches them.
+     */
+    private List<Contact> load(String location) {
+        long now = System.currentTimeMillis();
+
+        List<Contact> contacts = Collections
+                .unmodifiableList(contactsRepository.findByLocation(location));
+        locations.put(location, new CachedLocation(contacts, now));
+        return contacts;
+    }
+
+    /**
+     * Requests contacts from owner. If owner returned stale contacts, then
+     * they are marked as stale on this node too.
+     */
+    private List<Contact> forward(String owner, String location) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(SECRET_HEADER, secret);
+
+        ResponseEntity<Contact[]> response = restTemplate.exchange(owner
+                + LOCATION_PATH, HttpMethod.GET, new HttpEntity<Void>(headers),
+                Contact[].class, location);
+
+        String age = response.getHeaders().getFirst(Staleness.AGE_HEADER);
+        if (age != null) {
+            Staleness.markStale(System.currentTimeMillis()
+                    - Long.parseLong(age) * 1000L);
+        }
+
+        return Arrays.asList(response.getBody());
+    }
+
+    /**
+     * Contacts of location, that were loaded at some time.
+     */
+    private static class CachedLocation {
+
+        final List<Contact> contacts;
+        final long loadedAt;
+
+        CachedLocation(List<Contact> contacts, long loadedAt) {
+            this.contacts = contacts;
+            this.loadedAt = loadedAt;
+        }
+
+        boolean isExpired(long now, long ttl) {
+            return now - loadedAt >= ttl;
+        }
+
+    }
+
+}
@@ -0,0 +1,33 @@
+package grytsenko.contacts.rest.service;
+
+import java.util.List;
+
+/**
+ * Differences between contacts of client and groups of user.
+ */
+public class Reconciliation {
+
+    private final List<Integer> buckets;
+    private final UserGroups changes;
+
+    public Reconciliation(List<Integer> buckets, UserGroups changes) {
+        this.buckets = buckets;
+        this.changes = changes;
+    }
+
+    /**
+     * Returns the buckets, that differ.
+     */
+    public List<Integer> getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * Returns the groups with members from differing buckets only and
+     * contacts from these buckets.
+     */
+    public UserGroups getChanges() {
+        return changes;
+    }
+
+}
@@ -0,0 +1,93 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+import grytsenko.contacts.common.util.ContactsDigest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Finds differences between contacts of client and groups of user.
+ * 
+ * <p>
+ * Client sends digests of buckets of its contacts. Service calculates digests
+ * of the same buckets for groups of user and returns only buckets, whose
+ * digests differ. So the size of response depends on the number of changes,
+ * not on the number of contacts.
+ */
+@Service
+public class ReconciliationService {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ReconciliationService.class);
+
+    @Autowired
+    GroupsService groupsService;
+
+    /**
+     * Finds differences for user.
+     * 
+     * @param username
+     *            the name of user.
+     * @param digests
+     *            the digests of buckets, that are calculated by client.
+     * 
+     * @return the differing buckets and their contents.
+     */
+    public Reconciliation reconcile(String username, long[] digests) {
+        if (digests == null) {
+            throw new IllegalArgumentException("Digests not defined.");
+        }
+
+        UserGroups userGroups = groupsService.findGroupsOfUser(username);
+
+        ContactsDigest digest = new ContactsDigest(digests.length);
+        digest.addAll(userGroups.getGroups(), userGroups.getContacts());
+
+        long[] actualDigests = digest.getDigests();
+        boolean[] differs = new boolean[digests.length];
+        List<Integer> buckets = new ArrayList<Integer>();
+        for (int i = 0; i < digests.length; ++i) {
+            if (digests[i] != actualDigests[i]) {
+                differs[i] = true;
+                buckets.add(i);
+            }
+        }
+
+        List<Group> groups = new ArrayList<Group>();
+        for (Group group : userGroups.getGroups()) {
+            List<String> members = new ArrayList<String>();
+            for (String member : group.getMembers()) {
+                if (differs[digest.bucketOf(member)]) {
+                    members.add(member);
+                }
+            }
+
+            Group changedGroup = new Group();
+            changedGroup.setName(group.getName());
+            changedGroup.setTitle(group.getTitle());
+            changedGroup.setMembers(members);
+            groups.add(changedGroup);
+        }
+
+        List<Contact> contacts = new ArrayList<Contact>();
+        for (Contact contact : userGroups.getContacts()) {
+            if (differs[digest.bucketOf(contact.getUsername())]) {
+                contacts.add(contact);
+            }
+        }
+
+        LOGGER.debug("{} of {} buckets with {} contacts differ for {}.",
+                new Object[] { buckets.size(), digests.length,
+                        contacts.size(), username });
+
+        return new Reconciliation(buckets, new UserGroups(groups, contacts));
+    }
+
+}
@@ -22,6 +22,10 @@ public class SearchContactsService {
 
     @Autowired
     ContactsRepository contactsRepository;
+    @Autowired
+    LocationsCache locationsCache;
+    @Autowired
+    LocationStats locationStats;
 
     /**
      * Finds contact of single person.
@@ -40,6 +44,9 @@ public class SearchContactsService {
      * Determines location of user.
      * 
      * @return the location of user.
+     * 
+     * @throws UserNotFoundException
+     *             if user was not found.
      */
     public String findLocationOfUser(String username) {
         if (StringUtils.isNullOrEmpty(username)) {
@@ -48,8 +55,10 @@ public class SearchContactsService {
 
         LOGGER.debug("Get location of user {}.", username);
 
-        Contact contact = findByUser(username);
-        String location = contact.getLocation();
+        String location = contactsRepository.findLocationByUsername(username);
+        if (location == null) {
+            throw new UserNotFoundException(username);
+        }
         LOGGER.debug("Location of user {} is {}.", username, location);
 
         return location;
@@ -63,7 +72,8 @@ public class SearchContactsService {
             throw new IllegalStateException("Location not defined.");
         }
 
-        List<Contact> contacts = contactsRepository.findByLocation(location);
+        locationStats.countRequest(location);
+        List<Contact> contacts = locationsCache.findByLocation(location);
 
         return contacts;
     }
@@ -0,0 +1,33 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Groups of user and contacts from these groups.
+ * 
+ * <p>
+ * Each contact is included once, even if it belongs to several groups.
+ */
+public class UserGroups {
+
+    private final List<Group> groups;
+    private final Collection<Contact> contacts;
+
+    public UserGroups(List<Group> groups, Collection<Contact> contacts) {
+        this.groups = groups;
+        this.contacts = contacts;
+    }
+
+    public List<Group> getGroups() {
+        return groups;
+    }
+
+    public Collection<Contact> getContacts() {
+        return contacts;
+    }
+
+}
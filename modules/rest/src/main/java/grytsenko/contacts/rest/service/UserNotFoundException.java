@@ -0,0 +1,20 @@
+package grytsenko.contacts.rest.service;
+
+import static java.text.MessageFormat.format;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if user was not found in directory service.
+ */
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class UserNotFoundException extends RuntimeException {
+
+    private static final long serialVersionUID = -3719470342515861745L;
+
+    public UserNotFoundException(String username) {
+        super(format("User {0} not found.", username));
+    }
+
+}
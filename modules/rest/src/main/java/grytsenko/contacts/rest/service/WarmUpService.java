@@ -0,0 +1,111 @@
+package grytsenko.contacts.rest.service;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.List;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+
+/**
+ * Warms up application after start.
+ * 
+ * <p>
+ * Contacts from the most requested locations are loaded to cache and are
+ * serialized, so connections to directory service and serializers are
+ * initialized before application receives requests. Contacts are serialized
+ * by the same mappers, that serve requests, because mappers cache their
+ * serializers. In clustered mode only
+ * locations owned by this node are loaded, because other nodes may be not
+ * started yet.
+ */
+public class WarmUpService implements
+        ApplicationListener<ContextRefreshedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(WarmUpService.class);
+
+    @Autowired
+    LocationsCache locationsCache;
+    @Autowired
+    LocationStats locationStats;
+
+    private int locationsNum = 10;
+    private ObjectMapper jsonMapper;
+    private ObjectMapper smileMapper;
+
+    private volatile boolean ready;
+
+    /**
+     * Sets the number of locations, that are loaded during warm-up.
+     */
+    public void setLocationsNum(int locationsNum) {
+        this.locationsNum = locationsNum;
+    }
+
+    /**
+     * Sets mapper, that writes JSON in responses.
+     */
+    public void setJsonMapper(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+    }
+
+    /**
+     * Sets mapper, that writes Smile in responses.
+     */
+    public void setSmileMapper(ObjectMapper smileMapper) {
+        this.smileMapper = smileMapper;
+    }
+
+    /**
+     * Checks that warm-up is finished.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext().getParent() != null) {
+            return;
+        }
+
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+            }
+        }, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        long startedAt = System.currentTimeMillis();
+        List<String> locations = locationStats.getTopLocations(locationsNum);
+        LOGGER.info("Warm up {} locations.", locations.size());
+
+        for (String location : locations) {
+            if (!locationsCache.isOwned(location)) {
+                continue;
+            }
+
+            try {
+                List<Contact> contacts = locationsCache.findOwned(location);
+                jsonMapper.writeValueAsBytes(contacts);
+                smileMapper.writeValueAsBytes(contacts);
+            } catch (Exception exception) {
+                LOGGER.warn("Could not warm up {}.", location, exception);
+            }
+        }
+
+        ready = true;
+        LOGGER.info("Warm-up finished in {} ms.", System.currentTimeMillis()
+                - startedAt);
+    }
+
+}
@@ -0,0 +1,73 @@
+package grytsenko.contacts.rest.util;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to nodes using consistent hashing.
+ * 
+ * <p>
+ * Each node is placed on ring several times, so keys are distributed evenly
+ * and only keys of added or removed node are reassigned.
+ */
+public final class ConsistentHash {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final SortedMap<Long, String> ring = new TreeMap<Long, String>();
+
+    /**
+     * Creates ring for the given nodes.
+     * 
+     * @param nodes
+     *            the names of nodes.
+     * @param replicas
+     *            the number of points on ring for each node.
+     */
+    public ConsistentHash(Collection<String> nodes, int replicas) {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("Nodes not defined.");
+        }
+        if (replicas <= 0) {
+            throw new IllegalArgumentException("Invalid number of replicas.");
+        }
+
+        for (String node : nodes) {
+            for (int i = 0; i < replicas; ++i) {
+                ring.put(hash(node + '#' + i), node);
+            }
+        }
+    }
+
+    /**
+     * Returns the node, that owns the given key.
+     */
+    public String getNode(String key) {
+        long hash = hash(key);
+
+        SortedMap<Long, String> tail = ring.tailMap(hash);
+        Long point = tail.isEmpty() ? ring.firstKey() : tail.firstKey();
+        return ring.get(point);
+    }
+
+    private static long hash(String value) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("MD5 is not supported.", exception);
+        }
+
+        byte[] bytes = digest.digest(value.getBytes(UTF8));
+        long hash = 0;
+        for (int i = 0; i < 8; ++i) {
+            hash = (hash << 8) | (bytes[i] & 0xff);
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,102 @@
+package grytsenko.contacts.rest.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Template of LDAP filter, that is parsed once and then is used to build
+ * filters for different values.
+ * 
+ * <p>
+ * Template contains placeholders like <code>{0}</code>. Values are escaped
+ * according to RFC 4515, so they can contain any characters.
+ */
+public final class FilterTemplate {
+
+    private final String[] literals;
+    private final int[] indexes;
+
+    /**
+     * Parses the given template.
+     * 
+     * @param template
+     *            the template of filter, for example <code>(uid={0})</code>.
+     */
+    public FilterTemplate(String template) {
+        if (template == null) {
+            throw new IllegalArgumentException("Template not defined.");
+        }
+
+        List<String> parsedLiterals = new ArrayList<String>();
+        List<Integer> parsedIndexes = new ArrayList<Integer>();
+
+        int start = 0;
+        int open;
+        while ((open = template.indexOf('{', start)) >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Invalid template.");
+            }
+
+            parsedLiterals.add(template.substring(start, open));
+            try {
+                parsedIndexes.add(Integer.parseInt(template.substring(
+                        open + 1, close)));
+            } catch (NumberFormatException exception) {
+                throw new IllegalArgumentException("Invalid template.",
+                        exception);
+            }
+
+            start = close + 1;
+        }
+        parsedLiterals.add(template.substring(start));
+
+        literals = parsedLiterals.toArray(new String[parsedLiterals.size()]);
+        indexes = new int[parsedIndexes.size()];
+        for (int i = 0; i < indexes.length; ++i) {
+            indexes[i] = parsedIndexes.get(i);
+        }
+    }
+
+    /**
+     * Builds filter for the given values.
+     */
+    public String format(String... values) {
+        StringBuilder filter = new StringBuilder();
+        for (int i = 0; i < indexes.length; ++i) {
+            filter.append(literals[i]);
+            escape(values[indexes[i]], filter);
+        }
+        filter.append(literals[indexes.length]);
+        return filter.toString();
+    }
+
+    /**
+     * Escapes special characters of value according to RFC 4515.
+     */
+    private static void escape(String value, StringBuilder filter) {
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                filter.append("\\5c");
+                break;
+            case '*':
+                filter.append("\\2a");
+                break;
+            case '(':
+                filter.append("\\28");
+                break;
+            case ')':
+                filter.append("\\29");
+                break;
+            case '\0':
+                filter.append("\\00");
+                break;
+            default:
+                filter.append(c);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,121 @@
+package grytsenko.contacts.rest.util;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Utilities for hashes.
+ */
+public final class HashUtils {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef"
+            .toCharArray();
+
+    /**
+     * Calculates hash of contact, using only data that is synchronized by
+     * clients.
+     * 
+     * <p>
+     * Hash does not depend on attributes, that are not returned to clients, so
+     * it changes only if returned data is changed.
+     */
+    public static String contentHash(Contact contact) {
+        MessageDigest digest = createDigest();
+
+        update(digest, contact.getFirstName());
+        update(digest, contact.getLastName());
+        update(digest, contact.getPhotoUrl());
+        update(digest, contact.getMail());
+        update(digest, contact.getPhone());
+        update(digest, contact.getLocation());
+
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Calculates watermark of groups and their contacts.
+     * 
+     * <p>
+     * Watermark depends on names and members of groups and on usernames and
+     * hashes of contacts, but not on their order. So it changes only if some
+     * contact is added, removed, changed or moved to other group.
+     */
+    public static String watermark(List<Group> groups,
+            Collection<Contact> contacts) {
+        MessageDigest digest = createDigest();
+        for (Group group : groups) {
+            update(digest, group.getName());
+
+            List<String> members = new ArrayList<String>(group.getMembers());
+            Collections.sort(members);
+            for (String member : members) {
+                update(digest, member);
+            }
+            digest.update((byte) 0);
+        }
+        update(digest, contacts);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Adds usernames and hashes of contacts to digest in order of usernames.
+     */
+    private static void update(MessageDigest digest,
+            Collection<Contact> contacts) {
+        List<Contact> sortedContacts = new ArrayList<Contact>(contacts);
+        Collections.sort(sortedContacts, new Comparator<Contact>() {
+            @Override
+            public int compare(Contact first, Contact second) {
+                return first.getUsername().compareTo(second.getUsername());
+            }
+        });
+
+        for (Contact contact : sortedContacts) {
+            update(digest, contact.getUsername());
+            update(digest, contact.getHash());
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("MD5 is not supported.", exception);
+        }
+    }
+
+    /**
+     * Adds value to digest. Values are separated by zero byte, so that
+     * different sets of values give different hashes.
+     */
+    private static void update(MessageDigest digest, String value) {
+        if (value != null) {
+            digest.update(value.getBytes(UTF8));
+        }
+        digest.update((byte) 0);
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0x0f];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    private HashUtils() {
+    }
+
+}
@@ -0,0 +1,114 @@
+package grytsenko.contacts.rest.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Map, that evicts the least recently used entries, if it is full.
+ * 
+ * <p>
+ * Map is split into segments by hash of key, each segment has its own lock
+ * and evicts its own entries. So concurrent requests for different keys
+ * rarely wait for each other, but the order of eviction is approximate.
+ */
+public class LruMap<K, V> {
+
+    private static final int SEGMENTS_NUM = 16;
+
+    private final List<Segment> segments;
+
+    private volatile int segmentSize;
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public LruMap(int maxSize) {
+        segments = new ArrayList<Segment>(SEGMENTS_NUM);
+        for (int i = 0; i < SEGMENTS_NUM; ++i) {
+            segments.add(new Segment());
+        }
+        setMaxSize(maxSize);
+    }
+
+    /**
+     * Sets the maximum number of entries.
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+
+        segmentSize = Math.max(1, maxSize / SEGMENTS_NUM);
+    }
+
+    public V get(K key) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(K key, V value) {
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of entries, that were evicted from full map.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    private Segment segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return segments.get(hash & (SEGMENTS_NUM - 1));
+    }
+
+    /**
+     * Part of map, that is guarded by its own lock.
+     */
+    private class Segment extends LinkedHashMap<K, V> {
+
+        private static final long serialVersionUID = 2937481904125630912L;
+
+        Segment() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            if (size() > segmentSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package grytsenko.contacts.rest.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Refreshes cached values in background.
+ * 
+ * <p>
+ * Only one refresh of each key is running at a time, other requests for the
+ * same key wait for the running refresh.
+ */
+public class Refresher<K, V> {
+
+    private final Executor executor;
+
+    private final ConcurrentMap<K, FutureTask<V>> refreshes = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    public Refresher(Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor not defined.");
+        }
+
+        this.executor = executor;
+    }
+
+    /**
+     * Starts refresh of key, if it is not running yet.
+     * 
+     * @param loader
+     *            loads and caches new value.
+     * 
+     * @return the result of refresh.
+     * 
+     * @throws java.util.concurrent.RejectedExecutionException
+     *             if executor is busy.
+     */
+    public Future<V> refresh(final K key, Callable<V> loader) {
+        FutureTask<V> refresh = new FutureTask<V>(loader) {
+            @Override
+            protected void done() {
+                refreshes.remove(key, this);
+            }
+        };
+
+        FutureTask<V> running = refreshes.putIfAbsent(key, refresh);
+        if (running != null) {
+            return running;
+        }
+
+        try {
+            executor.execute(refresh);
+        } catch (RuntimeException exception) {
+            refreshes.remove(key, refresh);
+            throw exception;
+        }
+        return refresh;
+    }
+
+}
@@ -0,0 +1,59 @@
+package grytsenko.contacts.rest.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Loads values in threads of callers.
+ * 
+ * <p>
+ * Only one load of each key is running at a time, other requests for the same
+ * key wait for the running load and receive its result.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> loads = new ConcurrentHashMap<K, FutureTask<V>>();
+
+    /**
+     * Loads value of key or waits for the running load.
+     * 
+     * @param loader
+     *            loads and caches value.
+     * 
+     * @return the result of load.
+     */
+    public V load(final K key, Callable<V> loader) {
+        FutureTask<V> load = new FutureTask<V>(loader) {
+            @Override
+            protected void done() {
+                loads.remove(key, this);
+            }
+        };
+
+        FutureTask<V> running = loads.putIfAbsent(key, load);
+        if (running == null) {
+            running = load;
+            load.run();
+        }
+
+        try {
+            return running.get();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Load was interrupted.", exception);
+        }
+    }
+
+}
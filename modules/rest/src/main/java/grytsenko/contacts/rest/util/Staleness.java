@@ -0,0 +1,69 @@
+package grytsenko.contacts.rest.util;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Tracks stale data, that was returned instead of fresh data while request
+ * was processed by current thread.
+ * 
+ * <p>
+ * If stale data was returned, then response contains headers
+ * <code>Age</code> with age of the oldest data in seconds and
+ * <code>Warning</code> with code 110 (RFC 2616).
+ */
+public final class Staleness {
+
+    public static final String AGE_HEADER = "Age";
+    public static final String WARNING_HEADER = "Warning";
+
+    private static final String STALE_WARNING = "110 - \"Response is stale\"";
+
+    private static final ThreadLocal<Long> LOADED_AT = new ThreadLocal<Long>();
+
+    private Staleness() {
+    }
+
+    /**
+     * Marks that stale data, that was loaded at the given time, was returned.
+     */
+    public static void markStale(long loadedAt) {
+        Long oldest = LOADED_AT.get();
+        if (oldest == null || loadedAt < oldest) {
+            LOADED_AT.set(loadedAt);
+        }
+    }
+
+    /**
+     * Returns age of the oldest stale data in seconds or <code>-1</code>, if
+     * only fresh data was returned.
+     */
+    public static long getAge() {
+        Long oldest = LOADED_AT.get();
+        if (oldest == null) {
+            return -1;
+        }
+
+        return Math.max(0, (System.currentTimeMillis() - oldest) / 1000L);
+    }
+
+    /**
+     * Forgets about stale data, that was returned before.
+     */
+    public static void clear() {
+        LOADED_AT.remove();
+    }
+
+    /**
+     * Adds headers to response, if stale data was returned.
+     */
+    public static void addHeaders(HttpServletResponse response) {
+        long age = getAge();
+        if (age < 0) {
+            return;
+        }
+
+        response.setHeader(AGE_HEADER, Long.toString(age));
+        response.setHeader(WARNING_HEADER, STALE_WARNING);
+    }
+
+}
@@ -0,0 +1,97 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.repository.ContactCallback;
+import grytsenko.contacts.rest.service.AdminService;
+import grytsenko.contacts.rest.service.ExportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.Principal;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Processes requests of administrators.
+ */
+@Controller
+public class AdminController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(AdminController.class);
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    @Autowired
+    ExportService exportService;
+    @Autowired
+    AdminService adminService;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Exports contacts as JSON objects separated by new lines.
+     * 
+     * <p>
+     * Response is written as contacts are found, so export of large directory
+     * does not require much memory. Client can resume interrupted export,
+     * passing the last received username as cursor.
+     */
+    @RequestMapping(value = "admin/export", method = RequestMethod.GET)
+    public void export(
+            Principal principal,
+            @RequestParam(value = "location", required = false) String location,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestHeader(value = "Accept-Encoding", required = false) String acceptEncoding,
+            HttpServletResponse response) throws IOException {
+        String username = principal.getName();
+        if (!adminService.isAdmin(username)) {
+            LOGGER.warn("User {} is not an administrator.", username);
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        LOGGER.debug("Export contacts for {}.", username);
+
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding("UTF-8");
+
+        OutputStream stream = response.getOutputStream();
+        if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            stream = new GZIPOutputStream(stream);
+        }
+
+        final Writer writer = new OutputStreamWriter(stream, "UTF-8");
+        try {
+            exportService.export(location, cursor, new ContactCallback() {
+                @Override
+                public void handle(Contact contact) {
+                    try {
+                        writer.write(mapper.writeValueAsString(contact));
+                        writer.write('\n');
+                    } catch (IOException exception) {
+                        throw new IllegalStateException(
+                                "Could not write contact.", exception);
+                    }
+                }
+            });
+        } finally {
+            writer.close();
+        }
+    }
+
+}
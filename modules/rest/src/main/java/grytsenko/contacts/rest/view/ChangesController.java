@@ -0,0 +1,51 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Changes;
+import grytsenko.contacts.rest.service.ChangesService;
+
+import java.security.Principal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Processes requests for changes of contacts.
+ */
+@Controller
+public class ChangesController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ChangesController.class);
+
+    @Autowired
+    ChangesService changesService;
+
+    /**
+     * Returns watermark of groups of user.
+     * 
+     * <p>
+     * If client passes the known watermark and time to wait (in seconds), then
+     * response is returned as soon as contacts of groups are changed or time
+     * is over (long polling). Otherwise response is returned at once.
+     */
+    @RequestMapping(value = "changes", method = RequestMethod.GET)
+    @ResponseBody
+    public Changes changes(Principal principal,
+            @RequestParam(value = "watermark", required = false) String watermark,
+            @RequestParam(value = "wait", defaultValue = "0") long wait)
+            throws InterruptedException {
+        String username = principal.getName();
+
+        LOGGER.debug("Wait {}s for changes for {}.", wait, username);
+
+        return changesService.waitForChanges(username, watermark,
+                wait * 1000L);
+    }
+
+}
@@ -0,0 +1,54 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.service.LocationsCache;
+import grytsenko.contacts.rest.util.Staleness;
+
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Processes requests from other nodes of cluster.
+ */
+@Controller
+public class ClusterController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ClusterController.class);
+
+    @Autowired
+    LocationsCache locationsCache;
+
+    /**
+     * Returns contacts of people from location, that is owned by this node.
+     */
+    @RequestMapping(value = "cluster/location", method = RequestMethod.GET)
+    public ResponseEntity<List<Contact>> location(
+            @RequestParam("name") String location,
+            @RequestHeader(value = LocationsCache.SECRET_HEADER, required = false) String secret,
+            HttpServletResponse response) {
+        if (!locationsCache.isValidSecret(secret)) {
+            LOGGER.warn("Request from unknown node.");
+            return new ResponseEntity<List<Contact>>(HttpStatus.FORBIDDEN);
+        }
+
+        LOGGER.debug("Search contacts from {} for other node.", location);
+
+        List<Contact> contacts = locationsCache.findOwned(location);
+        Staleness.addHeaders(response);
+        return new ResponseEntity<List<Contact>>(contacts, HttpStatus.OK);
+    }
+
+}
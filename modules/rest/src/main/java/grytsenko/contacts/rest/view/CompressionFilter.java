@@ -0,0 +1,394 @@
+package grytsenko.contacts.rest.view;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Compresses responses using gzip, if client accepts it.
+ * 
+ * <p>
+ * Body is kept in memory, until its size reaches threshold. Smaller bodies
+ * are sent as is, because compression does not make them smaller. Responses,
+ * that are already encoded by controllers, are sent as is too.
+ */
+@ManagedResource(description = "Compression of responses.")
+public class CompressionFilter implements Filter {
+
+    private static final String GZIP = "gzip";
+
+    private int minSize = 1024;
+
+    private final AtomicLong bodyBytes = new AtomicLong();
+    private final AtomicLong sentBytes = new AtomicLong();
+    private final AtomicLong compressed = new AtomicLong();
+
+    /**
+     * Sets the minimal size of body in bytes, that is compressed.
+     */
+    public void setMinSize(int minSize) {
+        if (minSize < 0) {
+            throw new IllegalArgumentException("Invalid size.");
+        }
+
+        this.minSize = minSize;
+    }
+
+    @ManagedAttribute(description = "Minimal size of body, that is compressed.")
+    public int getMinSize() {
+        return minSize;
+    }
+
+    @ManagedAttribute(description = "Number of bytes in bodies before compression.")
+    public long getBodyBytes() {
+        return bodyBytes.get();
+    }
+
+    @ManagedAttribute(description = "Number of bytes in bodies, that were sent.")
+    public long getSentBytes() {
+        return sentBytes.get();
+    }
+
+    @ManagedAttribute(description = "Number of compressed responses.")
+    public long getCompressed() {
+        return compressed.get();
+    }
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        HttpServletResponse httpResponse = (HttpServletResponse) response;
+
+        CompressingResponse compressingResponse = new CompressingResponse(
+                httpResponse, acceptsGzip(httpRequest));
+        chain.doFilter(request, compressingResponse);
+        compressingResponse.finish();
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Checks that client accepts gzip and did not disable it with zero
+     * quality.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (!GZIP.equalsIgnoreCase(parts[0].trim())) {
+                continue;
+            }
+
+            for (int i = 1; i < parts.length; ++i) {
+                String parameter = parts[i].replace(" ", "");
+                if (parameter.matches("q=0(\\.0*)?")) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Response, whose body is compressed, if it is large enough.
+     */
+    private class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final boolean acceptsGzip;
+        private boolean encoded;
+
+        private CompressingStream stream;
+        private PrintWriter writer;
+
+        public CompressingResponse(HttpServletResponse response,
+                boolean acceptsGzip) {
+            super(response);
+
+            this.acceptsGzip = acceptsGzip;
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                return;
+            }
+            checkEncoding(name);
+            super.setHeader(name, value);
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                return;
+            }
+            checkEncoding(name);
+            super.addHeader(name, value);
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                return;
+            }
+            super.setIntHeader(name, value);
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            /*
+             * Length is set, when body is sent.
+             */
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) {
+                throw new IllegalStateException("Writer is already used.");
+            }
+
+            return getStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) {
+                    throw new IllegalStateException("Stream is already used.");
+                }
+
+                writer = new PrintWriter(new OutputStreamWriter(getStream(),
+                        getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (stream != null) {
+                stream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        @Override
+        public void resetBuffer() {
+            super.resetBuffer();
+            if (stream != null) {
+                stream.reset();
+            }
+        }
+
+        @Override
+        public void reset() {
+            super.reset();
+            if (stream != null) {
+                stream.reset();
+            }
+        }
+
+        /**
+         * Sends the rest of body.
+         */
+        public void finish() throws IOException {
+            if (writer != null) {
+                writer.close();
+            } else if (stream != null) {
+                stream.close();
+            }
+        }
+
+        private void checkEncoding(String name) {
+            if ("Content-Encoding".equalsIgnoreCase(name)) {
+                encoded = true;
+            }
+        }
+
+        private CompressingStream getStream() {
+            if (stream == null) {
+                stream = new CompressingStream(this);
+            }
+            return stream;
+        }
+
+        boolean isAcceptsGzip() {
+            return acceptsGzip;
+        }
+
+        boolean isEncoded() {
+            return encoded;
+        }
+
+    }
+
+    /**
+     * Keeps the beginning of body, until it is decided, whether body should
+     * be compressed.
+     */
+    private class CompressingStream extends ServletOutputStream {
+
+        private final CompressingResponse response;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private CountingOutputStream sent;
+        private OutputStream out;
+        private long written;
+        private boolean closed;
+
+        public CompressingStream(CompressingResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            write(new byte[] { (byte) value }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+                throws IOException {
+            if (closed) {
+                throw new IOException("Stream is closed.");
+            }
+
+            written += length;
+            if (out != null) {
+                out.write(bytes, offset, length);
+                return;
+            }
+
+            buffer.write(bytes, offset, length);
+            if (buffer.size() >= minSize) {
+                start(true);
+            }
+        }
+
+        /**
+         * Body is not flushed, until it is decided, whether it should be
+         * compressed.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+
+            if (out == null) {
+                HttpServletResponse original = (HttpServletResponse) response
+                        .getResponse();
+                original.setContentLength(buffer.size());
+                start(false);
+            }
+            out.close();
+            closed = true;
+
+            bodyBytes.addAndGet(written);
+            sentBytes.addAndGet(sent.getCount());
+        }
+
+        void reset() {
+            if (out == null) {
+                buffer.reset();
+                written = 0;
+            }
+        }
+
+        /**
+         * Sends the beginning of body.
+         * 
+         * @param large
+         *            <code>true</code> if size of body reached threshold.
+         */
+        private void start(boolean large) throws IOException {
+            HttpServletResponse original = (HttpServletResponse) response
+                    .getResponse();
+            boolean compress = large && response.isAcceptsGzip()
+                    && !response.isEncoded();
+            if (large && !response.isEncoded()) {
+                original.addHeader("Vary", "Accept-Encoding");
+            }
+            if (compress) {
+                original.setHeader("Content-Encoding", GZIP);
+                compressed.incrementAndGet();
+            }
+
+            sent = new CountingOutputStream(original.getOutputStream());
+            out = compress ? new GZIPOutputStream(sent) : sent;
+
+            buffer.writeTo(out);
+            buffer = null;
+        }
+
+    }
+
+    /**
+     * Counts bytes, that are written to stream.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int value) throws IOException {
+            out.write(value);
+            ++count;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length)
+                throws IOException {
+            out.write(bytes, offset, length);
+            count += length;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+    }
+
+}
@@ -0,0 +1,133 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fields of contacts, that are requested by client.
+ * 
+ * <p>
+ * Contacts are projected when they are read from cache, so only requested
+ * fields are serialized. Fields are always written in the same order, as in
+ * full contact.
+ */
+public final class ContactFields {
+
+    /**
+     * Names of all fields in order of serialization.
+     */
+    static final List<String> NAMES = Arrays.asList("username", "firstName",
+            "lastName", "photoUrl", "mail", "phone", "location", "version",
+            "hash");
+
+    /**
+     * All fields, contacts are returned as is.
+     */
+    public static final ContactFields ALL = new ContactFields(null);
+
+    private final boolean[] selected;
+
+    private ContactFields(boolean[] selected) {
+        this.selected = selected;
+    }
+
+    /**
+     * Parses list of fields separated by commas, for example
+     * <code>username,version</code>.
+     * 
+     * @return the requested fields or all fields, if list is empty.
+     * 
+     * @throws UnknownFieldException
+     *             if some field is not known.
+     */
+    public static ContactFields parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+
+        boolean[] selected = new boolean[NAMES.size()];
+        for (String field : fields.split(",")) {
+            String name = field.trim();
+            if (name.isEmpty()) {
+                continue;
+            }
+
+            int index = NAMES.indexOf(name);
+            if (index < 0) {
+                throw new UnknownFieldException(name);
+            }
+            selected[index] = true;
+        }
+        return new ContactFields(selected);
+    }
+
+    /**
+     * Leaves only requested fields of contact.
+     * 
+     * @return the contact itself, if all fields are requested, or the map of
+     *         requested fields.
+     */
+    public Object project(Contact contact) {
+        if (selected == null || contact == null) {
+            return contact;
+        }
+
+        Map<String, Object> projected = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < selected.length; ++i) {
+            if (selected[i]) {
+                projected.put(NAMES.get(i), valueOf(i, contact));
+            }
+        }
+        return projected;
+    }
+
+    /**
+     * Leaves only requested fields of each contact.
+     * 
+     * @return the same contacts, if all fields are requested, or the list of
+     *         maps of requested fields.
+     */
+    public Collection<?> project(Collection<Contact> contacts) {
+        if (selected == null) {
+            return contacts;
+        }
+
+        List<Object> projected = new ArrayList<Object>(contacts.size());
+        for (Contact contact : contacts) {
+            projected.add(project(contact));
+        }
+        return projected;
+    }
+
+    private static String valueOf(int field, Contact contact) {
+        switch (field) {
+        case 0:
+            return contact.getUsername();
+        case 1:
+            return contact.getFirstName();
+        case 2:
+            return contact.getLastName();
+        case 3:
+            return contact.getPhotoUrl();
+        case 4:
+            return contact.getMail();
+        case 5:
+            return contact.getPhone();
+        case 6:
+            return contact.getLocation();
+        case 7:
+            return contact.getVersion();
+        case 8:
+            return contact.getHash();
+        default:
+            throw new IllegalArgumentException("Field not defined.");
+        }
+    }
+
+}
@@ -0,0 +1,102 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.rest.repository.DirectoryBusyException;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * Returns status 503, if directory service was busy while user was
+ * authenticated.
+ * 
+ * <p>
+ * Authentication fails with status 500 otherwise, because this exception is
+ * not handled by security filters.
+ * 
+ * <p>
+ * Header <code>Retry-After</code> is added to each response with status 503,
+ * including responses of controllers.
+ */
+public class DirectoryBusyFilter implements Filter {
+
+    private static final String RETRY_AFTER_HEADER = "Retry-After";
+    private static final String RETRY_AFTER = "1";
+
+    @Override
+    public void init(FilterConfig config) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response,
+            FilterChain chain) throws IOException, ServletException {
+        try {
+            chain.doFilter(request, new RetryAfterResponse(
+                    (HttpServletResponse) response));
+        } catch (DirectoryBusyException exception) {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            if (httpResponse.isCommitted()) {
+                throw exception;
+            }
+
+            httpResponse.setHeader(RETRY_AFTER_HEADER, RETRY_AFTER);
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                    exception.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    /**
+     * Adds header <code>Retry-After</code>, when status 503 is set.
+     */
+    private static class RetryAfterResponse extends HttpServletResponseWrapper {
+
+        RetryAfterResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void setStatus(int status) {
+            retryAfter(status);
+            super.setStatus(status);
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void setStatus(int status, String message) {
+            retryAfter(status);
+            super.setStatus(status, message);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            retryAfter(status);
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            retryAfter(status);
+            super.sendError(status, message);
+        }
+
+        private void retryAfter(int status) {
+            if (status == SC_SERVICE_UNAVAILABLE
+                    && !containsHeader(RETRY_AFTER_HEADER)) {
+                setHeader(RETRY_AFTER_HEADER, RETRY_AFTER);
+            }
+        }
+
+    }
+
+}
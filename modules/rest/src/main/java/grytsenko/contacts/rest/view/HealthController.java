@@ -0,0 +1,40 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.rest.service.WarmUpService;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+
+/**
+ * Reports state of application to load balancer.
+ */
+@Controller
+public class HealthController {
+
+    @Autowired
+    WarmUpService warmUpService;
+
+    /**
+     * Returns status 200, if application is ready to process requests, and
+     * status 503 otherwise.
+     */
+    @RequestMapping(value = "health", method = RequestMethod.GET)
+    public ResponseEntity<Map<String, String>> health() {
+        if (!warmUpService.isReady()) {
+            return new ResponseEntity<Map<String, String>>(
+                    Collections.singletonMap("status", "WARMING_UP"),
+                    HttpStatus.SERVICE_UNAVAILABLE);
+        }
+
+        return new ResponseEntity<Map<String, String>>(
+                Collections.singletonMap("status", "UP"), HttpStatus.OK);
+    }
+
+}
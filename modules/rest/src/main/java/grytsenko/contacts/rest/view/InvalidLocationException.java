@@ -0,0 +1,18 @@
+package grytsenko.contacts.rest.view;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if client requested location without path.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidLocationException extends RuntimeException {
+
+    private static final long serialVersionUID = 7315982406517230844L;
+
+    public InvalidLocationException(String message) {
+        super(message);
+    }
+
+}
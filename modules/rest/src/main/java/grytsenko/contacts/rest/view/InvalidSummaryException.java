@@ -0,0 +1,18 @@
+package grytsenko.contacts.rest.view;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if client sent summary of contacts, that can not be reconciled.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidSummaryException extends RuntimeException {
+
+    private static final long serialVersionUID = -1402675230942377512L;
+
+    public InvalidSummaryException(String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,170 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Location;
+import grytsenko.contacts.rest.service.AdminService;
+import grytsenko.contacts.rest.service.DirectorySnapshot;
+import grytsenko.contacts.rest.service.LocationIndex;
+import grytsenko.contacts.rest.service.SearchContactsService;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.List;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Processes requests to search contacts by hierarchy of locations.
+ */
+@Controller
+public class LocationsController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(LocationsController.class);
+
+    private static final String JSON = "application/json;charset=UTF-8";
+
+    @Autowired
+    LocationIndex locationIndex;
+    @Autowired
+    SearchContactsService searchContactsService;
+    @Autowired
+    AdminService adminService;
+
+    /**
+     * Returns location with nested locations and the number of people in
+     * each of them.
+     */
+    @RequestMapping(value = "locations", method = RequestMethod.GET)
+    public ResponseEntity<Location> locations(
+            @RequestParam(value = "path", required = false) String path) {
+        LOGGER.debug("Get location {}.", path);
+
+        Location location = locationIndex.getLocation(path);
+        if (location == null) {
+            return new ResponseEntity<Location>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<Location>(location, HttpStatus.OK);
+    }
+
+    /**
+     * Returns contacts of people from the given locations and all nested
+     * locations.
+     * 
+     * <p>
+     * Users can request only locations, that are nested in the top location
+     * of user (for example, user from <code>Kyiv/Podil</code> can request
+     * <code>Kyiv</code> and <code>Kyiv/Obolon</code>, but not
+     * <code>Lviv</code>). Administrators can request any location.
+     * 
+     * <p>
+     * Contacts are written as they were serialized to JSON, when index was
+     * built, unless client prefers Smile.
+     */
+    @RequestMapping(value = "location", method = RequestMethod.GET)
+    @ResponseBody
+    public List<Contact> location(Principal principal,
+            @RequestParam("path") List<String> paths,
+            @RequestHeader(value = "Accept", required = false) String accept,
+            HttpServletResponse response) throws IOException {
+        if (paths.isEmpty()) {
+            throw new InvalidLocationException("Path not defined.");
+        }
+        for (String path : paths) {
+            if (DirectorySnapshot.normalize(path).isEmpty()) {
+                throw new InvalidLocationException("Path not defined.");
+            }
+        }
+
+        String username = principal.getName();
+        if (!isAllowed(username, paths)) {
+            LOGGER.warn("User {} can not request {}.", username, paths);
+            response.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return null;
+        }
+
+        LOGGER.debug("Search contacts for people from {}.", paths);
+
+        DirectorySnapshot snapshot = locationIndex.getSnapshot();
+        if (prefersSmile(accept)) {
+            return snapshot.findByPaths(paths);
+        }
+
+        byte[] json = snapshot.toJson(paths);
+        response.setContentType(JSON);
+        response.setContentLength(json.length);
+        response.getOutputStream().write(json);
+        return null;
+    }
+
+    /**
+     * Checks that user can request contacts from the given locations.
+     */
+    private boolean isAllowed(String username, List<String> paths) {
+        if (adminService.isAdmin(username)) {
+            return true;
+        }
+
+        String userPath = DirectorySnapshot.normalize(searchContactsService
+                .findLocationOfUser(username));
+        if (userPath.isEmpty()) {
+            return false;
+        }
+
+        String topPath = userPath.split(DirectorySnapshot.SEPARATOR)[0];
+        for (String path : paths) {
+            if (!DirectorySnapshot.isNested(DirectorySnapshot.normalize(path),
+                    topPath)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks that Smile is explicitly preferred to JSON. Wildcards are
+     * resolved to JSON, as JSON is the default format.
+     */
+    static boolean prefersSmile(String accept) {
+        if (accept == null) {
+            return false;
+        }
+
+        List<MediaType> types;
+        try {
+            types = MediaType.parseMediaTypes(accept);
+        } catch (IllegalArgumentException exception) {
+            return false;
+        }
+
+        MediaType.sortByQualityValue(types);
+        for (MediaType type : types) {
+            if (type.getQualityValue() == 0) {
+                continue;
+            }
+            if (!type.isWildcardType() && !type.isWildcardSubtype()
+                    && type.includes(SmileHttpMessageConverter.APPLICATION_SMILE)) {
+                return true;
+            }
+            if (type.includes(MediaType.APPLICATION_JSON)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+}
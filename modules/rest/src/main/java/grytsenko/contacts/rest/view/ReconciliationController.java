@@ -0,0 +1,70 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.ContactsSummary;
+import grytsenko.contacts.common.util.ContactsDigest;
+import grytsenko.contacts.rest.service.Reconciliation;
+import grytsenko.contacts.rest.service.ReconciliationService;
+import grytsenko.contacts.rest.util.Staleness;
+
+import java.security.Principal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+/**
+ * Processes requests to reconcile contacts of client with groups of user.
+ */
+@Controller
+public class ReconciliationController {
+
+    private static final Logger LOGGER = LoggerFactory
+            .getLogger(ReconciliationController.class);
+
+    @Autowired
+    ReconciliationService reconciliationService;
+
+    /**
+     * Returns groups and contacts from buckets, whose digests differ from
+     * digests of client.
+     * 
+     * <p>
+     * Differing buckets are written first, so clients know which of their
+     * contacts were removed, before contacts are processed.
+     */
+    @RequestMapping(value = "reconcile", method = RequestMethod.POST)
+    @ResponseBody
+    public Map<String, Object> reconcile(Principal principal,
+            @RequestBody ContactsSummary summary, HttpServletResponse response) {
+        String username = principal.getName();
+
+        long[] digests = summary.getDigests();
+        if (digests == null || digests.length == 0
+                || digests.length > ContactsDigest.MAX_BUCKETS) {
+            throw new InvalidSummaryException("Invalid number of buckets.");
+        }
+
+        LOGGER.debug("Reconcile {} buckets for {}.", digests.length, username);
+
+        Reconciliation reconciliation = reconciliationService.reconcile(
+                username, digests);
+
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("buckets", reconciliation.getBuckets());
+        body.put("groups", reconciliation.getChanges().getGroups());
+        body.put("contacts", reconciliation.getChanges().getContacts());
+
+        Staleness.addHeaders(response);
+        return body;
+    }
+
+}
@@ -1,10 +1,18 @@
 package grytsenko.contacts.rest.view;
 
 import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.service.GroupsService;
 import grytsenko.contacts.rest.service.SearchContactsService;
+import grytsenko.contacts.rest.service.UserGroups;
+import grytsenko.contacts.rest.util.Staleness;
 
 import java.security.Principal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,6 +20,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 /**
@@ -25,26 +34,42 @@ public class SearchController {
 
     @Autowired
     SearchContactsService searchContactsService;
+    @Autowired
+    GroupsService groupsService;
 
     /**
      * Finds contact of current user.
+     * 
+     * @param fields
+     *            fields of contact, that should be returned (optional).
      */
     @RequestMapping(value = "my", method = RequestMethod.GET)
     @ResponseBody
-    public Contact my(Principal principal) {
+    public Object my(Principal principal,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletResponse response) {
+        ContactFields requestedFields = ContactFields.parse(fields);
         String username = principal.getName();
 
         LOGGER.debug("Search contact of {}.", username);
 
-        return searchContactsService.findByUser(username);
+        Contact contact = searchContactsService.findByUser(username);
+        Staleness.addHeaders(response);
+        return requestedFields.project(contact);
     }
 
     /**
      * Returns contacts of all coworkers, i.e. people from the same office.
+     * 
+     * @param fields
+     *            fields of contacts, that should be returned (optional).
      */
     @RequestMapping(value = "coworkers", method = RequestMethod.GET)
     @ResponseBody
-    public List<Contact> coworkers(Principal principal) {
+    public Collection<?> coworkers(Principal principal,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletResponse response) {
+        ContactFields requestedFields = ContactFields.parse(fields);
         String userLocation = searchContactsService
                 .findLocationOfUser(principal.getName());
 
@@ -54,7 +79,39 @@ public class SearchController {
                 .findByLocation(userLocation);
         LOGGER.debug("Found {} contacts.", coworkersContacts.size());
 
-        return coworkersContacts;
+        Staleness.addHeaders(response);
+        return requestedFields.project(coworkersContacts);
+    }
+
+    /**
+     * Returns all groups of user and contacts from these groups.
+     * 
+     * <p>
+     * Groups are written before contacts, so clients can process contacts one
+     * by one.
+     * 
+     * @param fields
+     *            fields of contacts, that should be returned (optional).
+     */
+    @RequestMapping(value = "groups", method = RequestMethod.GET)
+    @ResponseBody
+    public Map<String, Object> groups(Principal principal,
+            @RequestParam(value = "fields", required = false) String fields,
+            HttpServletResponse response) {
+        ContactFields requestedFields = ContactFields.parse(fields);
+        String username = principal.getName();
+
+        LOGGER.debug("Search groups of {}.", username);
+
+        UserGroups userGroups = groupsService.findGroupsOfUser(username);
+
+        Map<String, Object> body = new LinkedHashMap<String, Object>();
+        body.put("groups", userGroups.getGroups());
+        body.put("contacts", requestedFields.project(userGroups
+                .getContacts()));
+
+        Staleness.addHeaders(response);
+        return body;
     }
 
 }
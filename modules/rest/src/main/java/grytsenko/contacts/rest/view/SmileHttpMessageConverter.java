@@ -0,0 +1,43 @@
+package grytsenko.contacts.rest.view;
+
+import static java.util.Collections.singletonList;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
+import org.codehaus.jackson.smile.SmileGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJacksonHttpMessageConverter;
+
+/**
+ * Converts objects to binary JSON (Smile) and vice versa.
+ * 
+ * <p>
+ * Smile keeps the structure of JSON, but it does not repeat names of fields
+ * and short values (like locations), so lists of contacts become much
+ * smaller.
+ */
+public class SmileHttpMessageConverter extends
+        MappingJacksonHttpMessageConverter {
+
+    /**
+     * Media type for Smile.
+     */
+    public static final MediaType APPLICATION_SMILE = new MediaType(
+            "application", "x-jackson-smile");
+
+    public SmileHttpMessageConverter() {
+        setObjectMapper(createObjectMapper());
+        setSupportedMediaTypes(singletonList(APPLICATION_SMILE));
+    }
+
+    /**
+     * Creates mapper, that writes and reads Smile.
+     */
+    public static ObjectMapper createObjectMapper() {
+        SmileFactory factory = new SmileFactory();
+        factory.configure(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES,
+                true);
+        return new ObjectMapper(factory);
+    }
+
+}
@@ -0,0 +1,29 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.rest.util.Staleness;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Forgets about stale data before and after each request, because threads
+ * of web server are reused.
+ */
+public class StalenessInterceptor extends HandlerInterceptorAdapter {
+
+    @Override
+    public boolean preHandle(HttpServletRequest request,
+            HttpServletResponse response, Object handler) {
+        Staleness.clear();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request,
+            HttpServletResponse response, Object handler, Exception exception) {
+        Staleness.clear();
+    }
+
+}
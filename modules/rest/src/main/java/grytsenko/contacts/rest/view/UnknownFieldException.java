@@ -0,0 +1,20 @@
+package grytsenko.contacts.rest.view;
+
+import static java.text.MessageFormat.format;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Thrown if client requested field, that contacts do not have.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class UnknownFieldException extends RuntimeException {
+
+    private static final long serialVersionUID = 5184620937126473908L;
+
+    public UnknownFieldException(String field) {
+        super(format("Field {0} not known.", field));
+    }
+
+}
@@ -0,0 +1,228 @@
+package grytsenko.contacts.rest.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks when {@link CachingContactsRepository} calls delegate.
+ */
+public class CachingContactsRepositoryTests {
+
+    private static final long TTL = 100L;
+    private static final int THREADS_NUM = 16;
+
+    private CachingContactsRepository repository;
+    private StubRepository delegate;
+    private ExecutorService refreshExecutor;
+
+    @Before
+    public void setUp() {
+        delegate = new StubRepository();
+        refreshExecutor = Executors.newSingleThreadExecutor();
+
+        repository = new CachingContactsRepository();
+        repository.setDelegate(delegate);
+        repository.setTtl(TTL);
+        repository.setRefreshExecutor(refreshExecutor);
+        repository.setRefreshWait(10000L);
+    }
+
+    @After
+    public void tearDown() {
+        refreshExecutor.shutdown();
+    }
+
+    /**
+     * Contact is loaded again, when it expires.
+     */
+    @Test
+    public void expiredContactIsLoadedAgain() throws Exception {
+        Contact contact = repository.findByUsername("jdoe");
+        assertSame(contact, repository.findByUsername("jdoe"));
+        assertEquals(contact.getLocation(),
+                repository.findLocationByUsername("jdoe"));
+        assertEquals(1, delegate.contactCalls.get());
+        assertEquals(0, delegate.locationCalls.get());
+
+        Thread.sleep(2 * TTL);
+
+        Contact refreshed = repository.findByUsername("jdoe");
+        assertEquals(2, delegate.contactCalls.get());
+        assertEquals("2", refreshed.getVersion());
+        assertSame(refreshed, repository.findByUsername("jdoe"));
+        assertEquals(2, repository.getMisses());
+        assertEquals(3, repository.getHits());
+    }
+
+    /**
+     * User, that was not found, is not searched again, until entry expires.
+     */
+    @Test
+    public void missingUserIsCached() {
+        delegate.missing = true;
+
+        assertNull(repository.findByUsername("jdoe"));
+        assertNull(repository.findByUsername("jdoe"));
+        assertNull(repository.findLocationByUsername("jdoe"));
+        assertEquals(1, delegate.contactCalls.get());
+        assertEquals(0, delegate.locationCalls.get());
+
+        assertNull(repository.findLocationByUsername("other"));
+        assertNull(repository.findLocationByUsername("other"));
+        assertEquals(1, delegate.locationCalls.get());
+    }
+
+    /**
+     * Full cache keeps the maximum number of contacts and counts evicted
+     * contacts.
+     */
+    @Test
+    public void fullCacheEvictsContacts() {
+        repository.setMaxSize(32);
+        for (int i = 0; i < 1000; ++i) {
+            repository.findByUsername("user" + i);
+        }
+
+        assertEquals(32, repository.getSize());
+        assertEquals(1000 - 32, repository.getEvictions());
+    }
+
+    /**
+     * Concurrent requests for contact, that is not cached, are served by one
+     * search.
+     */
+    @Test
+    public void concurrentMissesAreCoalesced() throws Exception {
+        delegate.delay = 200L;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_NUM);
+        try {
+            List<Future<Contact>> contacts = new ArrayList<Future<Contact>>();
+            for (int i = 0; i < THREADS_NUM; ++i) {
+                contacts.add(executor.submit(new Callable<Contact>() {
+                    @Override
+                    public Contact call() throws Exception {
+                        start.await();
+                        return repository.findByUsername("jdoe");
+                    }
+                }));
+            }
+            start.countDown();
+
+            Contact contact = contacts.get(0).get(10L, TimeUnit.SECONDS);
+            for (Future<Contact> other : contacts) {
+                assertSame(contact, other.get(10L, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, delegate.contactCalls.get());
+    }
+
+    /**
+     * Concurrent requests for location, that is not cached, are served by one
+     * search.
+     */
+    @Test
+    public void concurrentMissesOfLocationsAreCoalesced() throws Exception {
+        delegate.delay = 200L;
+
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_NUM);
+        try {
+            List<Future<String>> locations = new ArrayList<Future<String>>();
+            for (int i = 0; i < THREADS_NUM; ++i) {
+                locations.add(executor.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        start.await();
+                        return repository.findLocationByUsername("jdoe");
+                    }
+                }));
+            }
+            start.countDown();
+
+            for (Future<String> location : locations) {
+                assertEquals("Kyiv", location.get(10L, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, delegate.locationCalls.get());
+    }
+
+    /**
+     * Counts searches and returns new version of contact on each search.
+     */
+    private static class StubRepository implements ContactsRepository {
+
+        final AtomicInteger contactCalls = new AtomicInteger();
+        final AtomicInteger locationCalls = new AtomicInteger();
+
+        volatile boolean missing;
+        volatile long delay;
+
+        @Override
+        public Contact findByUsername(String username) {
+            int version = contactCalls.incrementAndGet();
+            pause();
+            if (missing) {
+                return null;
+            }
+
+            Contact contact = new Contact();
+            contact.setUsername(username);
+            contact.setLocation("Kyiv");
+            contact.setVersion(Integer.toString(version));
+            return contact;
+        }
+
+        @Override
+        public String findLocationByUsername(String username) {
+            locationCalls.incrementAndGet();
+            pause();
+            return missing ? null : "Kyiv";
+        }
+
+        @Override
+        public List<Contact> findByLocation(String location) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void findAll(String cursor, ContactCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+        private void pause() {
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+    }
+
+}
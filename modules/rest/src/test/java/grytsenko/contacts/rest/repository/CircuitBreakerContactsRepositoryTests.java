@@ -0,0 +1,106 @@
+package grytsenko.contacts.rest.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.ldap.CommunicationException;
+
+/**
+ * Checks which calls are counted as failures by
+ * {@link CircuitBreakerContactsRepository}.
+ */
+public class CircuitBreakerContactsRepositoryTests {
+
+    private static final int WINDOW_SIZE = 10;
+
+    private CircuitBreakerContactsRepository repository;
+    private StubRepository delegate;
+
+    @Before
+    public void setUp() {
+        delegate = new StubRepository();
+        repository = new CircuitBreakerContactsRepository();
+        repository.setDelegate(delegate);
+        repository.setWindowSize(WINDOW_SIZE);
+        repository.setMinCalls(WINDOW_SIZE);
+        repository.setFailureRate(0.5);
+        repository.setOpenTime(60000L);
+    }
+
+    /**
+     * Calls, that could not get permit, do not open circuit.
+     */
+    @Test
+    public void busyDirectoryDoesNotOpenCircuit() {
+        delegate.exception = new DirectoryBusyException();
+        for (int i = 0; i < 2 * WINDOW_SIZE; ++i) {
+            call();
+        }
+
+        assertEquals("CLOSED", repository.getState());
+        assertEquals(0, repository.getOpened());
+        assertEquals(2 * WINDOW_SIZE, repository.getRejected());
+    }
+
+    /**
+     * Errors of directory service open circuit.
+     */
+    @Test
+    public void failingDirectoryOpensCircuit() {
+        delegate.exception = new CommunicationException(
+                new javax.naming.CommunicationException("Connection reset."));
+        for (int i = 0; i < WINDOW_SIZE; ++i) {
+            call();
+        }
+
+        assertEquals("OPEN", repository.getState());
+        assertEquals(1, repository.getOpened());
+
+        call();
+        assertEquals(WINDOW_SIZE, delegate.calls);
+        assertEquals(1, repository.getRejected());
+    }
+
+    private void call() {
+        try {
+            repository.findLocationByUsername("jdoe");
+            fail("Call succeeded.");
+        } catch (RuntimeException exception) {
+            // Expected.
+        }
+    }
+
+    private static class StubRepository implements ContactsRepository {
+
+        RuntimeException exception;
+        int calls;
+
+        @Override
+        public Contact findByUsername(String username) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String findLocationByUsername(String username) {
+            ++calls;
+            throw exception;
+        }
+
+        @Override
+        public List<Contact> findByLocation(String location) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void findAll(String cursor, ContactCallback callback) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+}
@@ -0,0 +1,124 @@
+package grytsenko.contacts.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import grytsenko.contacts.common.model.Changes;
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.common.model.Group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that {@link ChangesService} tracks only users, whose clients wait
+ * for changes.
+ */
+public class ChangesServiceTests {
+
+    private static final String USERNAME = "jdoe";
+
+    private ChangesService service;
+    private StubGroupsService groupsService;
+
+    @Before
+    public void setUp() {
+        groupsService = new StubGroupsService();
+        service = new ChangesService();
+        service.groupsService = groupsService;
+        service.searchContactsService = new SearchContactsService() {
+            @Override
+            public String findLocationOfUser(String username) {
+                return "Kyiv";
+            }
+        };
+    }
+
+    /**
+     * Requests without waiting are answered at once and do not start tracking.
+     */
+    @Test
+    public void requestWithoutWaitIsNotTracked() throws Exception {
+        Changes changes = service.waitForChanges(USERNAME, null, 0);
+        assertTrue(changes.isChanged());
+        assertEquals(1, groupsService.calls.get());
+
+        changes = service.waitForChanges(USERNAME, changes.getWatermark(), 0);
+        assertFalse(changes.isChanged());
+        assertEquals(2, groupsService.calls.get());
+
+        service.refresh();
+        assertEquals(2, groupsService.calls.get());
+    }
+
+    /**
+     * Waiting client is woken up by refresh, that detects changes, and user is
+     * not tracked after that.
+     */
+    @Test
+    public void waiterIsWokenUpByChanges() throws Exception {
+        final String watermark = service.waitForChanges(USERNAME, null, 0)
+                .getWatermark();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Changes> changes = executor.submit(new Callable<Changes>() {
+                @Override
+                public Changes call() throws Exception {
+                    return service.waitForChanges(USERNAME, watermark,
+                            ChangesService.MAX_WAIT);
+                }
+            });
+
+            while (groupsService.calls.get() < 2) {
+                Thread.sleep(10L);
+            }
+            Thread.sleep(100L);
+
+            service.refresh();
+            assertEquals(3, groupsService.calls.get());
+            assertFalse(changes.isDone());
+
+            groupsService.name = "Lviv";
+            service.refresh();
+            assertEquals(4, groupsService.calls.get());
+            assertTrue(changes.get(10L, TimeUnit.SECONDS).isChanged());
+        } finally {
+            executor.shutdown();
+        }
+
+        service.refresh();
+        assertEquals(4, groupsService.calls.get());
+    }
+
+    private static class StubGroupsService extends GroupsService {
+
+        final AtomicInteger calls = new AtomicInteger();
+        volatile String name = "Kyiv";
+
+        @Override
+        public UserGroups findGroupsOfUser(String username) {
+            calls.incrementAndGet();
+
+            Group group = new Group();
+            group.setName(name);
+            group.setMembers(Collections.singletonList(username));
+
+            Contact contact = new Contact();
+            contact.setUsername(username);
+            return new UserGroups(Collections.singletonList(group),
+                    new ArrayList<Contact>(Collections.singletonList(contact)));
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package grytsenko.contacts.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks search of contacts by paths in {@link DirectorySnapshot}.
+ */
+public class DirectorySnapshotTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private DirectorySnapshot snapshot;
+
+    @Before
+    public void setUp() throws Exception {
+        List<Contact> contacts = new ArrayList<Contact>();
+        contacts.add(contact("ivanov", "Kyiv"));
+        contacts.add(contact("petrov", "Kyiv/Podil"));
+        contacts.add(contact("sidorov", "Kyiv/Podil/Floor 2"));
+        contacts.add(contact("popov", "Kyiv Obl"));
+        contacts.add(contact("kuznetsov", "Lviv"));
+        contacts.add(contact("petrov", "Lviv"));
+        snapshot = DirectorySnapshot.build(1, contacts, mapper);
+    }
+
+    @Test
+    public void firstContactOfUserIsUsed() {
+        assertEquals(5, snapshot.size());
+        assertEquals(1, snapshot.getLocation("Lviv").getCount());
+    }
+
+    @Test
+    public void nestedPathsAreSkipped() throws Exception {
+        List<String> paths = Arrays.asList("Kyiv/Podil", "Kyiv Obl", "Kyiv",
+                "Kyiv/Podil/Floor 2");
+
+        assertUsernames(snapshot.findByPaths(paths), "ivanov", "petrov",
+                "sidorov", "popov");
+        assertUsernames(parse(snapshot.toJson(paths)), "ivanov", "petrov",
+                "sidorov", "popov");
+    }
+
+    @Test
+    public void pathsAreNormalized() throws Exception {
+        List<String> paths = Arrays.asList(" Kyiv / Podil/", "Kyiv/Podil");
+
+        assertUsernames(snapshot.findByPaths(paths), "petrov", "sidorov");
+        assertUsernames(parse(snapshot.toJson(paths)), "petrov", "sidorov");
+    }
+
+    @Test
+    public void unknownPathIsEmpty() throws Exception {
+        List<String> paths = Arrays.asList("Kharkiv");
+
+        assertNull(snapshot.getLocation("Kharkiv"));
+        assertEquals(0, snapshot.findByPaths(paths).size());
+        assertEquals("[]", new String(snapshot.toJson(paths), "UTF-8"));
+    }
+
+    private List<Contact> parse(byte[] json) throws Exception {
+        return Arrays.asList(mapper.readValue(json, Contact[].class));
+    }
+
+    private static void assertUsernames(List<Contact> contacts,
+            String... usernames) {
+        Set<String> found = new HashSet<String>();
+        for (Contact contact : contacts) {
+            found.add(contact.getUsername());
+        }
+
+        assertEquals(usernames.length, contacts.size());
+        assertEquals(new HashSet<String>(Arrays.asList(usernames)), found);
+    }
+
+    private static Contact contact(String username, String location) {
+        Contact contact = new Contact();
+        contact.setUsername(username);
+        contact.setLocation(location);
+        return contact;
+    }
+
+}
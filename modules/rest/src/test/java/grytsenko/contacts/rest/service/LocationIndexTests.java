@@ -0,0 +1,274 @@
+package grytsenko.contacts.rest.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import grytsenko.contacts.common.model.Contact;
+import grytsenko.contacts.rest.repository.ContactCallback;
+import grytsenko.contacts.rest.repository.ContactsRepository;
+import grytsenko.contacts.rest.repository.DirectoryBusyException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks that readers of {@link LocationIndex} see consistent snapshots,
+ * while index is rebuilt.
+ */
+public class LocationIndexTests {
+
+    private static final String[] LOCATIONS = { "Kyiv", "Kyiv/Podil",
+            "Kyiv/Obolon", "Kyiv Obl", "Lviv", "Lviv/Center", "Kharkiv/A/B",
+            "" };
+
+    private static final int READERS = 4;
+    private static final long DURATION = 2000L;
+
+    private LocationIndex index;
+    private SyntheticRepository repository;
+
+    @Before
+    public void setUp() {
+        repository = new SyntheticRepository();
+        index = new LocationIndex();
+        index.contactsRepository = repository;
+    }
+
+    /**
+     * Concurrent requests, that come before index is built, build it once.
+     */
+    @Test
+    public void indexIsBuiltOnce() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(READERS);
+        try {
+            List<Future<DirectorySnapshot>> snapshots = new ArrayList<Future<DirectorySnapshot>>();
+            for (int i = 0; i < READERS; ++i) {
+                snapshots.add(executor
+                        .submit(new Callable<DirectorySnapshot>() {
+                            @Override
+                            public DirectorySnapshot call() throws Exception {
+                                start.await();
+                                return index.getSnapshot();
+                            }
+                        }));
+            }
+            start.countDown();
+
+            for (Future<DirectorySnapshot> snapshot : snapshots) {
+                assertEquals(1, snapshot.get().getVersion());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(1, repository.generation.get());
+    }
+
+    /**
+     * If the first build failed, then requests do not build index again until
+     * the next scheduled rebuild.
+     */
+    @Test
+    public void failedBuildIsNotRepeated() {
+        repository.failing = true;
+        for (int i = 0; i < READERS; ++i) {
+            try {
+                index.getSnapshot();
+                fail("Index was built.");
+            } catch (DirectoryBusyException exception) {
+                // Expected.
+            }
+        }
+        assertEquals(1, repository.generation.get());
+
+        repository.failing = false;
+        index.rebuild();
+        assertEquals(1, index.getSnapshot().getVersion());
+        assertEquals(2, repository.generation.get());
+    }
+
+    /**
+     * Readers check, that snapshot is never changed and never goes back,
+     * while writer rebuilds index.
+     */
+    @Test
+    public void readersSeeConsistentSnapshots() throws Exception {
+        index.rebuild();
+
+        final AtomicBoolean stopped = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(READERS + 1);
+        try {
+            Future<Integer> writer = executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int rebuilds = 0;
+                    while (!stopped.get()) {
+                        index.rebuild();
+                        ++rebuilds;
+                    }
+                    return rebuilds;
+                }
+            });
+
+            List<Future<Integer>> readers = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < READERS; ++i) {
+                readers.add(executor.submit(new Reader(i, stopped)));
+            }
+
+            Thread.sleep(DURATION);
+            stopped.set(true);
+
+            assertTrue(writer.get() > 0);
+            for (Future<Integer> reader : readers) {
+                assertTrue(reader.get() > 0);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Reads random locations and checks snapshots.
+     */
+    private class Reader implements Callable<Integer> {
+
+        private final Random random;
+        private final AtomicBoolean stopped;
+
+        private final ObjectMapper mapper = new ObjectMapper();
+
+        Reader(long seed, AtomicBoolean stopped) {
+            this.random = new Random(seed);
+            this.stopped = stopped;
+        }
+
+        @Override
+        public Integer call() throws Exception {
+            int reads = 0;
+            long lastVersion = 0;
+            while (!stopped.get()) {
+                DirectorySnapshot snapshot = index.getSnapshot();
+                assertTrue(snapshot.getVersion() >= lastVersion);
+                lastVersion = snapshot.getVersion();
+
+                String path = LOCATIONS[random.nextInt(LOCATIONS.length)];
+                List<String> paths = Arrays.asList(path, path + "/Podil",
+                        "Kyiv Obl");
+                List<Contact> found = snapshot.findByPaths(paths);
+                check(snapshot, paths, found);
+
+                if (reads % 16 == 0) {
+                    Contact[] parsed = mapper.readValue(snapshot.toJson(paths),
+                            Contact[].class);
+                    assertEquals(found.size(), parsed.length);
+                    for (int i = 0; i < parsed.length; ++i) {
+                        assertEquals(found.get(i).getUsername(),
+                                parsed[i].getUsername());
+                        assertEquals(found.get(i).getVersion(),
+                                parsed[i].getVersion());
+                    }
+                }
+
+                assertEquals(snapshot.size(), snapshot.getLocation("")
+                        .getCount());
+                ++reads;
+            }
+            return reads;
+        }
+
+        /**
+         * Contacts are taken from one rebuild, each user is found once and
+         * the same contacts are found by filter of all contacts.
+         */
+        private void check(DirectorySnapshot snapshot, List<String> paths,
+                List<Contact> found) {
+            Set<String> usernames = new HashSet<String>();
+            String version = null;
+            for (Contact contact : found) {
+                assertTrue(usernames.add(contact.getUsername()));
+                if (version == null) {
+                    version = contact.getVersion();
+                }
+                assertEquals(version, contact.getVersion());
+            }
+
+            Set<String> expected = new HashSet<String>();
+            for (Contact contact : snapshot.findByPaths(Collections
+                    .singleton(""))) {
+                String location = DirectorySnapshot.normalize(contact
+                        .getLocation());
+                for (String path : paths) {
+                    if (DirectorySnapshot.isNested(location,
+                            DirectorySnapshot.normalize(path))) {
+                        expected.add(contact.getUsername());
+                    }
+                }
+            }
+            assertEquals(expected, usernames);
+        }
+
+    }
+
+    /**
+     * Returns different contacts on each call, each call is a new
+     * generation of contacts.
+     */
+    private static class SyntheticRepository implements ContactsRepository {
+
+        final AtomicInteger generation = new AtomicInteger();
+        volatile boolean failing;
+
+        @Override
+        public Contact findByUsername(String username) {
+            return null;
+        }
+
+        @Override
+        public String findLocationByUsername(String username) {
+            return null;
+        }
+
+        @Override
+        public List<Contact> findByLocation(String location) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void findAll(String cursor, ContactCallback callback) {
+            int current = generation.incrementAndGet();
+            if (failing) {
+                throw new DirectoryBusyException();
+            }
+
+            int size = 500 + (current * 37) % 1500;
+            for (int i = 0; i < size; ++i) {
+                Contact contact = new Contact();
+                contact.setUsername("user" + (i + current) % 3000);
+                contact.setFirstName("First" + i);
+                contact.setLastName("Last");
+                contact.setLocation(LOCATIONS[(i + current) % LOCATIONS.length]);
+                contact.setVersion(Integer.toString(current));
+                callback.handle(contact);
+            }
+        }
+
+    }
+
+}
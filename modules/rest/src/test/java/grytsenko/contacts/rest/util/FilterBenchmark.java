@@ -0,0 +1,53 @@
+package grytsenko.contacts.rest.util;
+
+import java.text.MessageFormat;
+
+/**
+ * Compares time of building LDAP filters by {@link MessageFormat} and by
+ * {@link FilterTemplate}.
+ * 
+ * <p>
+ * Run it with
+ * <code>mvn -pl rest test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=grytsenko.contacts.rest.util.FilterBenchmark</code>
+ * .
+ */
+public class FilterBenchmark {
+
+    private static final String TEMPLATE = "(l={0})";
+    private static final String[] VALUES = { "Donetsk", "Kyiv (HQ)", "Lviv",
+            "Kharkiv*" };
+
+    private static final int CALLS = 2000000;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        FilterTemplate template = new FilterTemplate(TEMPLATE);
+
+        System.out.println(String.format("%-5s %15s %15s", "round",
+                "MessageFormat", "FilterTemplate"));
+        long length = 0;
+        for (int round = 0; round < ROUNDS; ++round) {
+            long startedAt = System.nanoTime();
+            for (int i = 0; i < CALLS; ++i) {
+                length += MessageFormat.format(TEMPLATE, VALUES[i & 3])
+                        .length();
+            }
+            double messageFormatNs = (System.nanoTime() - startedAt)
+                    / (double) CALLS;
+
+            startedAt = System.nanoTime();
+            for (int i = 0; i < CALLS; ++i) {
+                length += template.format(VALUES[i & 3]).length();
+            }
+            double filterTemplateNs = (System.nanoTime() - startedAt)
+                    / (double) CALLS;
+
+            System.out.println(String.format("%-5d %12.1f ns %12.1f ns",
+                    round, messageFormatNs, filterTemplateNs));
+        }
+
+        // Result is used, so loops are not removed by compiler.
+        System.out.println("Total length of filters: " + length);
+    }
+
+}
@@ -0,0 +1,77 @@
+package grytsenko.contacts.rest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import grytsenko.contacts.common.model.Contact;
+
+import org.junit.Test;
+
+/**
+ * Checks which data changes hash of contact.
+ */
+public class HashUtilsTests {
+
+    @Test
+    public void hashDependsOnSynchronizedData() {
+        String hash = HashUtils.contentHash(contact());
+
+        Contact changed = contact();
+        changed.setPhone("+380441234568");
+        assertFalse(hash.equals(HashUtils.contentHash(changed)));
+
+        changed = contact();
+        changed.setLocation("Lviv");
+        assertFalse(hash.equals(HashUtils.contentHash(changed)));
+    }
+
+    /**
+     * Attributes, that are not synchronized, do not change hash.
+     */
+    @Test
+    public void hashDoesNotDependOnOtherData() {
+        String hash = HashUtils.contentHash(contact());
+        assertEquals(32, hash.length());
+
+        Contact changed = contact();
+        changed.setVersion("2");
+        changed.setHash("other");
+        assertEquals(hash, HashUtils.contentHash(changed));
+    }
+
+    /**
+     * Values are separated, so moving of characters between fields changes
+     * hash. Missing value and empty value give the same hash.
+     */
+    @Test
+    public void valuesAreSeparated() {
+        Contact first = contact();
+        first.setFirstName("Jo");
+        first.setLastName("hnDoe");
+        Contact second = contact();
+        second.setFirstName("John");
+        second.setLastName("Doe");
+        assertFalse(HashUtils.contentHash(first).equals(
+                HashUtils.contentHash(second)));
+
+        Contact missing = contact();
+        missing.setPhotoUrl(null);
+        Contact empty = contact();
+        empty.setPhotoUrl("");
+        assertEquals(HashUtils.contentHash(missing),
+                HashUtils.contentHash(empty));
+    }
+
+    private static Contact contact() {
+        Contact contact = new Contact();
+        contact.setUsername("jdoe");
+        contact.setFirstName("John");
+        contact.setLastName("Doe");
+        contact.setPhotoUrl("http://example.com/jdoe.png");
+        contact.setMail("jdoe@example.com");
+        contact.setPhone("+380441234567");
+        contact.setLocation("Kyiv");
+        contact.setVersion("1");
+        return contact;
+    }
+
+}
@@ -0,0 +1,61 @@
+package grytsenko.contacts.rest.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * Checks eviction of entries from {@link LruMap}.
+ */
+public class LruMapTests {
+
+    private static final int MAX_SIZE = 160;
+    private static final int KEYS_NUM = 10000;
+
+    /**
+     * Full map keeps the maximum number of entries and counts each evicted
+     * entry.
+     */
+    @Test
+    public void fullMapEvictsEntries() {
+        LruMap<String, Integer> map = new LruMap<String, Integer>(MAX_SIZE);
+        for (int i = 0; i < KEYS_NUM; ++i) {
+            map.put("key" + i, i);
+        }
+
+        assertEquals(MAX_SIZE, map.size());
+        assertEquals(KEYS_NUM - MAX_SIZE, map.getEvictions());
+
+        map.put("key" + (KEYS_NUM - 1), 0);
+        assertEquals(MAX_SIZE, map.size());
+        assertEquals(KEYS_NUM - MAX_SIZE, map.getEvictions());
+
+        map.clear();
+        assertEquals(0, map.size());
+    }
+
+    /**
+     * Entry, that is read after each put, is never evicted, and entries,
+     * that were put long ago, are evicted.
+     */
+    @Test
+    public void recentlyUsedEntryIsKept() {
+        LruMap<String, Integer> map = new LruMap<String, Integer>(MAX_SIZE);
+        map.put("used", -1);
+        for (int i = 0; i < KEYS_NUM; ++i) {
+            map.put("key" + i, i);
+            assertEquals(Integer.valueOf(-1), map.get("used"));
+        }
+
+        assertNull(map.get("key0"));
+        assertEquals(Integer.valueOf(KEYS_NUM - 1),
+                map.get("key" + (KEYS_NUM - 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sizeMustBePositive() {
+        new LruMap<String, Integer>(0);
+    }
+
+}
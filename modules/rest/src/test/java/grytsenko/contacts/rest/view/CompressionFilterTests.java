@@ -0,0 +1,296 @@
+package grytsenko.contacts.rest.view;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import grytsenko.contacts.common.model.Contact;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Checks headers and bodies of responses, that pass through
+ * {@link CompressionFilter}.
+ */
+public class CompressionFilterTests {
+
+    private static final int MIN_SIZE = 1024;
+
+    private CompressionFilter filter;
+
+    private byte[] smallBody;
+    private byte[] largeBody;
+
+    @Before
+    public void setUp() throws Exception {
+        filter = new CompressionFilter();
+        filter.setMinSize(MIN_SIZE);
+
+        ObjectMapper mapper = new ObjectMapper();
+        smallBody = mapper.writeValueAsBytes(contacts(2));
+        largeBody = mapper.writeValueAsBytes(contacts(100));
+        assertTrue(smallBody.length < MIN_SIZE);
+        assertTrue(largeBody.length > MIN_SIZE);
+    }
+
+    /**
+     * Small body is sent as is with its length.
+     */
+    @Test
+    public void smallBodyIsNotCompressed() throws Exception {
+        StubResponse response = filter("gzip", new Body(smallBody));
+
+        assertArrayEquals(smallBody, response.body.toByteArray());
+        assertEquals(smallBody.length, response.contentLength);
+        assertNull(response.getHeader("Content-Encoding"));
+        assertNull(response.getHeader("Vary"));
+        assertEquals(0, filter.getCompressed());
+    }
+
+    /**
+     * Large body is compressed, if client accepts gzip.
+     */
+    @Test
+    public void largeBodyIsCompressed() throws Exception {
+        StubResponse response = filter("deflate, gzip", new Body(largeBody));
+
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals(-1, response.contentLength);
+        assertArrayEquals(largeBody, gunzip(response.body.toByteArray()));
+        assertTrue(response.body.size() < largeBody.length);
+
+        assertEquals(1, filter.getCompressed());
+        assertEquals(largeBody.length, filter.getBodyBytes());
+        assertEquals(response.body.size(), filter.getSentBytes());
+    }
+
+    /**
+     * Large body is sent as is, if client disabled gzip, but response still
+     * varies by encoding.
+     */
+    @Test
+    public void gzipWithZeroQualityIsNotUsed() throws Exception {
+        StubResponse response = filter("gzip;q=0, identity",
+                new Body(largeBody));
+
+        assertArrayEquals(largeBody, response.body.toByteArray());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+
+        assertFalse(filter("gzip; q=0.0", new Body(largeBody)).headers
+                .containsKey("Content-Encoding"));
+        assertEquals("gzip", filter("gzip;q=0.5", new Body(largeBody))
+                .getHeader("Content-Encoding"));
+        assertNull(filter(null, new Body(largeBody)).getHeader(
+                "Content-Encoding"));
+    }
+
+    /**
+     * Body, that is encoded by controller, is sent as is.
+     */
+    @Test
+    public void encodedBodyIsNotCompressedAgain() throws Exception {
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(encoded);
+        gzip.write(largeBody);
+        gzip.close();
+        final byte[] encodedBody = encoded.toByteArray();
+
+        StubResponse response = filter("gzip", new Body(encodedBody) {
+            @Override
+            public void doFilter(ServletRequest request,
+                    ServletResponse response) throws IOException,
+                    ServletException {
+                ((HttpServletResponse) response).setHeader(
+                        "Content-Encoding", "gzip");
+                super.doFilter(request, response);
+            }
+        });
+
+        assertArrayEquals(encodedBody, response.body.toByteArray());
+        assertEquals(Arrays.asList("gzip"),
+                response.headers.get("Content-Encoding"));
+        assertEquals(0, filter.getCompressed());
+    }
+
+    /**
+     * Errors are sent by container, filter does not add body or headers.
+     */
+    @Test
+    public void errorIsPassedThrough() throws Exception {
+        StubResponse response = filter("gzip", new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request,
+                    ServletResponse response) throws IOException,
+                    ServletException {
+                ((HttpServletResponse) response).sendError(
+                        HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        "Directory service is busy.");
+            }
+        });
+
+        assertEquals(HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                response.error);
+        assertEquals(0, response.body.size());
+        assertEquals(-1, response.contentLength);
+        assertTrue(response.headers.isEmpty());
+    }
+
+    private StubResponse filter(String acceptEncoding, FilterChain chain)
+            throws Exception {
+        StubResponse response = new StubResponse();
+        filter.doFilter(request(acceptEncoding), response.proxy(), chain);
+        return response;
+    }
+
+    private static List<Contact> contacts(int num) {
+        List<Contact> contacts = new ArrayList<Contact>();
+        for (int i = 0; i < num; ++i) {
+            Contact contact = new Contact();
+            contact.setUsername("user" + i);
+            contact.setFirstName("First");
+            contact.setLastName("Last");
+            contact.setLocation("Kyiv");
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    private static byte[] gunzip(byte[] bytes) throws IOException {
+        InputStream stream = new GZIPInputStream(new ByteArrayInputStream(
+                bytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        for (int read; (read = stream.read(buffer)) != -1;) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static HttpServletRequest request(final String acceptEncoding) {
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                CompressionFilterTests.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method,
+                            Object[] args) {
+                        if (method.getName().equals("getHeader")
+                                && "Accept-Encoding".equals(args[0])) {
+                            return acceptEncoding;
+                        }
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * Controller, that writes body in small chunks.
+     */
+    private static class Body implements FilterChain {
+
+        private final byte[] body;
+
+        Body(byte[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response)
+                throws IOException, ServletException {
+            response.setContentType("application/json");
+            response.setContentLength(body.length);
+            ServletOutputStream out = response.getOutputStream();
+            for (int offset = 0; offset < body.length; offset += 100) {
+                out.write(body, offset, Math.min(100, body.length - offset));
+                out.flush();
+            }
+        }
+
+    }
+
+    /**
+     * Response of container, that records headers, errors and body.
+     */
+    private static class StubResponse implements InvocationHandler {
+
+        final Map<String, List<String>> headers = new HashMap<String, List<String>>();
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        int contentLength = -1;
+        int error;
+
+        HttpServletResponse proxy() {
+            return (HttpServletResponse) Proxy.newProxyInstance(getClass()
+                    .getClassLoader(),
+                    new Class<?>[] { HttpServletResponse.class }, this);
+        }
+
+        String getHeader(String name) {
+            List<String> values = headers.get(name);
+            return values != null ? values.get(0) : null;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("setHeader")) {
+                headers.put((String) args[0], new ArrayList<String>(
+                        Arrays.asList((String) args[1])));
+            } else if (name.equals("addHeader")) {
+                List<String> values = headers.get(args[0]);
+                if (values == null) {
+                    values = new ArrayList<String>();
+                    headers.put((String) args[0], values);
+                }
+                values.add((String) args[1]);
+            } else if (name.equals("setContentLength")) {
+                contentLength = (Integer) args[0];
+            } else if (name.equals("sendError")) {
+                error = (Integer) args[0];
+            } else if (name.equals("getCharacterEncoding")) {
+                return "UTF-8";
+            } else if (name.equals("getOutputStream")) {
+                return new ServletOutputStream() {
+                    @Override
+                    public void write(int value) {
+                        body.write(value);
+                    }
+                };
+            } else if (method.getReturnType() == boolean.class) {
+                return false;
+            } else if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            return null;
+        }
+
+    }
+
+}
@@ -0,0 +1,87 @@
+package grytsenko.contacts.rest.view;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import grytsenko.contacts.common.model.Contact;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.junit.Test;
+
+/**
+ * Checks projection of contacts to requested fields.
+ */
+public class ContactFieldsTests {
+
+    @Test
+    public void emptyListSelectsAllFields() {
+        assertSame(ContactFields.ALL, ContactFields.parse(null));
+        assertSame(ContactFields.ALL, ContactFields.parse(" "));
+
+        Contact contact = contact();
+        assertSame(contact, ContactFields.ALL.project(contact));
+    }
+
+    /**
+     * Requested fields are written in order of full contact, whatever the
+     * order of request.
+     */
+    @Test
+    public void onlyRequestedFieldsAreReturned() throws Exception {
+        ContactFields fields = ContactFields.parse("version, username,,");
+
+        Map<?, ?> projected = (Map<?, ?>) fields.project(contact());
+        assertEquals(Arrays.asList("username", "version"),
+                Arrays.asList(projected.keySet().toArray()));
+        assertEquals("jdoe", projected.get("username"));
+        assertEquals("3", projected.get("version"));
+
+        Collection<?> contacts = fields.project(Arrays.asList(contact(),
+                contact()));
+        assertEquals("[{\"username\":\"jdoe\",\"version\":\"3\"},"
+                + "{\"username\":\"jdoe\",\"version\":\"3\"}]",
+                new ObjectMapper().writeValueAsString(contacts));
+    }
+
+    /**
+     * Each field of contact can be requested by its name in JSON.
+     */
+    @Test
+    public void namesMatchFullContact() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        Map<?, ?> full = mapper.readValue(mapper.writeValueAsBytes(contact()),
+                Map.class);
+        List<?> names = Arrays.asList(full.keySet().toArray());
+        assertEquals(ContactFields.NAMES, names);
+
+        for (String name : ContactFields.NAMES) {
+            Map<?, ?> projected = (Map<?, ?>) ContactFields.parse(name)
+                    .project(contact());
+            assertEquals(full.get(name), projected.get(name));
+        }
+    }
+
+    @Test(expected = UnknownFieldException.class)
+    public void unknownFieldIsRejected() {
+        ContactFields.parse("username,password");
+    }
+
+    private static Contact contact() {
+        Contact contact = new Contact();
+        contact.setUsername("jdoe");
+        contact.setFirstName("John");
+        contact.setLastName("Doe");
+        contact.setPhotoUrl("http://example.com/jdoe.png");
+        contact.setMail("jdoe@example.com");
+        contact.setPhone("+380441234567");
+        contact.setLocation("Kyiv");
+        contact.setVersion("3");
+        contact.setHash("0c3c5a1f");
+        return contact;
+    }
+
+}
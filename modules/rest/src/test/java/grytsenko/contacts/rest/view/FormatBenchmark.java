@@ -0,0 +1,97 @@
+package grytsenko.contacts.rest.view;
+
+import grytsenko.contacts.common.model.Contact;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+/**
+ * Compares size of lists of contacts and time of their encoding and decoding
+ * in JSON and in Smile.
+ * 
+ * <p>
+ * Run it with
+ * <code>mvn -pl rest test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=grytsenko.contacts.rest.view.FormatBenchmark</code>
+ * .
+ */
+public class FormatBenchmark {
+
+    private static final int[] SIZES = { 1000, 10000 };
+
+    private static final int WARMUP = 50;
+    private static final int ROUNDS = 50;
+
+    public static void main(String[] args) throws IOException {
+        ObjectMapper json = new ObjectMapper();
+        ObjectMapper smile = new SmileHttpMessageConverter().getObjectMapper();
+
+        System.out.println(String.format("%-6s %7s %10s %10s %9s %9s",
+                "format", "count", "bytes", "gzip", "enc ms", "dec ms"));
+        for (int size : SIZES) {
+            List<Contact> contacts = createContacts(size);
+            measure("json", json, contacts);
+            measure("smile", smile, contacts);
+        }
+    }
+
+    private static void measure(String format, ObjectMapper mapper,
+            List<Contact> contacts) throws IOException {
+        byte[] bytes = null;
+        for (int i = 0; i < WARMUP; ++i) {
+            bytes = mapper.writeValueAsBytes(contacts);
+            mapper.readValue(bytes, Contact[].class);
+        }
+
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            bytes = mapper.writeValueAsBytes(contacts);
+        }
+        double encodeMs = (System.nanoTime() - startedAt) / 1e6 / ROUNDS;
+
+        startedAt = System.nanoTime();
+        for (int i = 0; i < ROUNDS; ++i) {
+            mapper.readValue(bytes, Contact[].class);
+        }
+        double decodeMs = (System.nanoTime() - startedAt) / 1e6 / ROUNDS;
+
+        System.out.println(String.format("%-6s %7d %10d %10d %9.2f %9.2f",
+                format, contacts.size(), bytes.length, gzip(bytes).length,
+                encodeMs, decodeMs));
+    }
+
+    /**
+     * Creates contacts, that look like contacts from directory service: a
+     * few locations and repeated first names.
+     */
+    private static List<Contact> createContacts(int size) {
+        List<Contact> contacts = new ArrayList<Contact>(size);
+        for (int i = 0; i < size; ++i) {
+            Contact contact = new Contact();
+            contact.setUsername("user" + i);
+            contact.setFirstName("First" + (i % 300));
+            contact.setLastName("Last" + i);
+            contact.setPhotoUrl("");
+            contact.setMail("user" + i + "@test.com");
+            contact.setPhone("+380000" + i);
+            contact.setLocation("Location" + (i % 20));
+            contact.setVersion("20130722110100Z");
+            contact.setHash(Integer.toHexString(i * 31 + 17));
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        GZIPOutputStream stream = new GZIPOutputStream(compressed);
+        stream.write(bytes);
+        stream.close();
+        return compressed.toByteArray();
+    }
+
+}